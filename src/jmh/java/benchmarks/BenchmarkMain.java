@@ -0,0 +1,145 @@
+package benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the benchmarks, writes the results as JMH JSON to {@code target/jmh/results.json} and
+ * compares them with the baseline results of a previous run. A benchmark regresses when its score
+ * gets worse by more than {@code benchmark_threshold} (10% by default) and by more than the score
+ * errors of both runs. The first run without the {@code benchmark_baseline} file saves its results
+ * as the baseline. The arguments are passed to JMH as is, e.g. {@code -p items=20 PageBenchmark}.
+ */
+public final class BenchmarkMain {
+
+  private static final Logger log = LoggerFactory.getLogger(BenchmarkMain.class);
+  private static final Path RESULTS = Paths.get("target", "jmh", "results.json");
+  private static final Path BASELINE =
+      Paths.get(System.getProperty("benchmark_baseline", "benchmark-baseline.json"));
+  private static final double THRESHOLD =
+      Double.parseDouble(System.getProperty("benchmark_threshold", "0.1"));
+
+  public static void main(String[] args)
+      throws CommandLineOptionException, RunnerException, IOException {
+    CommandLineOptions arguments = new CommandLineOptions(args);
+    if (arguments.shouldList()) {
+      new Runner(arguments).list();
+      return;
+    }
+    Files.createDirectories(RESULTS.getParent());
+    Options options =
+        new OptionsBuilder()
+            .parent(arguments)
+            .resultFormat(ResultFormatType.JSON)
+            .result(RESULTS.toString())
+            .build();
+    if (new Runner(options).run().isEmpty()) {
+      log.error("No benchmark has completed, see the benchmark output above");
+      System.exit(1);
+    }
+
+    if (!Files.exists(BASELINE)) {
+      Files.copy(RESULTS, BASELINE);
+      log.info("No benchmark baseline found, saved the results as baseline {}", BASELINE);
+      return;
+    }
+    int regressions = compare(read(BASELINE), read(RESULTS));
+    if (regressions > 0) {
+      log.error("{} benchmark(s) regressed against baseline {}", regressions, BASELINE);
+      System.exit(1);
+    }
+    if (Boolean.getBoolean("benchmark_update_baseline")) {
+      Files.copy(RESULTS, BASELINE, StandardCopyOption.REPLACE_EXISTING);
+      log.info("Benchmark baseline {} updated", BASELINE);
+    }
+  }
+
+  private static int compare(Map<String, Score> baseline, Map<String, Score> results) {
+    int regressions = 0;
+    for (Map.Entry<String, Score> entry : results.entrySet()) {
+      Score before = baseline.get(entry.getKey());
+      Score after = entry.getValue();
+      if (before == null) {
+        log.info("{}: {} {} (new)", entry.getKey(), after.score, after.unit);
+        continue;
+      }
+      double change = (after.score - before.score) / before.score;
+      // Lower is better for the time modes, higher is better for the throughput
+      double worse = after.higherIsBetter ? -change : change;
+      boolean regressed =
+          worse > THRESHOLD
+              && Math.abs(after.score - before.score) > before.error + after.error;
+      if (regressed) {
+        regressions++;
+      }
+      log.info(
+          "{}: {} -> {} {} ({}{}%){}",
+          entry.getKey(),
+          before.score,
+          after.score,
+          after.unit,
+          change >= 0 ? "+" : "",
+          Math.round(change * 1000) / 10.0,
+          regressed ? " REGRESSION" : "");
+    }
+    return regressions;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Score> read(Path path) throws IOException {
+    String json = new String(Files.readAllBytes(path), UTF_8);
+    Map<String, Score> scores = new LinkedHashMap<>();
+    List<Map<String, Object>> results = new Json().toType(json, List.class);
+    for (Map<String, Object> values : results) {
+      Object params = values.get("params");
+      String key =
+          values.get("benchmark")
+              + (params == null ? "" : " " + new TreeMap<>((Map<String, Object>) params));
+      scores.put(key, new Score(values));
+    }
+    return scores;
+  }
+
+  private static final class Score {
+
+    private final double score;
+    private final double error;
+    private final String unit;
+    private final boolean higherIsBetter;
+
+    @SuppressWarnings("unchecked")
+    private Score(Map<String, Object> values) {
+      Map<String, Object> metric = (Map<String, Object>) values.get("primaryMetric");
+      score = toDouble(metric.get("score"));
+      error = toDouble(metric.get("scoreError"));
+      unit = (String) metric.get("scoreUnit");
+      higherIsBetter = "thrpt".equals(values.get("mode"));
+    }
+
+    private static double toDouble(Object value) {
+      // The score error is written as "NaN" when there are too few iterations to compute it
+      return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+  }
+
+  private BenchmarkMain() {}
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import browser.Browser;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Browser of the benchmark thread with the static Slack client fixture open. The fixture renders
+ * {@link #items} sidebar channels, messages and saved items.
+ */
+@State(Scope.Thread)
+public class FixtureBrowser {
+
+  private static final String CLIENT_FIXTURE = "/fixtures/client.html";
+
+  @Param({"20", "200"})
+  public int items;
+
+  @Setup(Level.Trial)
+  public void open() throws URISyntaxException {
+    Browser.start();
+    Browser.resize();
+    URL fixture = FixtureBrowser.class.getResource(CLIENT_FIXTURE);
+    Browser.driver().get(Paths.get(fixture.toURI()).toUri() + "?items=" + items);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    Browser.quit();
+  }
+
+  /** Returns the name of the last sidebar channel, the worst case for the channel lookup. */
+  public String lastChannel() {
+    return "channel-" + (items - 1);
+  }
+}
@@ -0,0 +1,35 @@
+package browser;
+
+import benchmarks.FixtureBrowser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Round trips of the {@link Browser} helpers against the static client fixture. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BrowserBenchmark {
+
+  @Benchmark
+  public String getTitle(FixtureBrowser browser) {
+    return Browser.driver().getTitle();
+  }
+
+  @Benchmark
+  public Object executeRoundTrip(FixtureBrowser browser) {
+    return Browser.execute("return 1");
+  }
+
+  @Benchmark
+  public byte[] takeScreenshot(FixtureBrowser browser) {
+    return Browser.takeScreenshot();
+  }
+}
@@ -0,0 +1,92 @@
+package pages;
+
+import benchmarks.FixtureBrowser;
+import browser.Browser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.PageFactory;
+
+/**
+ * Page object initialization, locator lookups and element reads of {@link ClientPage} against the
+ * static client fixture. Every pair of benchmarks compares two ways of doing the same thing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PageBenchmark {
+
+  // CSS cannot match by text, the items found by CSS are compared by text in the same script call
+  private static final String CHANNEL_BY_CSS_JS =
+      "var items = document.querySelectorAll('[data-qa=virtual-list-item]');"
+          + "for (var i = 0; i < items.length; i++) {"
+          + "  if (items[i].textContent === arguments[0]) return items[i];"
+          + "}"
+          + "return null;";
+  private static final By SAVED_MESSAGES =
+      By.cssSelector("[aria-label=Saved] .p-rich_text_section");
+
+  private ClientPage page;
+
+  @Setup(Level.Trial)
+  public void createPage(FixtureBrowser browser) {
+    page = new ClientPage();
+  }
+
+  @Benchmark
+  public ClientPage newClientPage(FixtureBrowser browser) {
+    return new ClientPage();
+  }
+
+  @Benchmark
+  public ClientPage bindGeneratedElements(FixtureBrowser browser) {
+    ClientPageElements.bind(page, Browser.driver());
+    return page;
+  }
+
+  @Benchmark
+  public ClientPage pageFactoryInitElements(FixtureBrowser browser) {
+    PageFactory.initElements(Browser.driver(), page);
+    return page;
+  }
+
+  @Benchmark
+  public WebElement channelByXpath(FixtureBrowser browser) {
+    return Browser.driver().findElement(ClientPageElements.channelXpath(browser.lastChannel()));
+  }
+
+  @Benchmark
+  public WebElement channelByCss(FixtureBrowser browser) {
+    return (WebElement) Browser.execute(CHANNEL_BY_CSS_JS, browser.lastChannel());
+  }
+
+  @Benchmark
+  public List<String> savedMessagesGetTextLoop(FixtureBrowser browser) {
+    return Browser.driver().findElements(SAVED_MESSAGES).stream()
+        .map(WebElement::getText)
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<String> savedMessagesBulkRead(FixtureBrowser browser) {
+    return page.readAll(SAVED_MESSAGES).stream()
+        .map(ElementSnapshot::getText)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,22 @@
+package pagegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.openqa.selenium.support.How;
+
+/**
+ * Marks a {@code String} constant of a page class as a locator pattern formatted with {@link
+ * String#format}. {@link PageElementsProcessor} generates a factory method for it that builds the
+ * locator once per distinct set of arguments. The method name is the constant name in camel case
+ * without the {@code _PATTERN} suffix, e.g. {@code channelXpath(String)} for {@code
+ * CHANNEL_XPATH_PATTERN}.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface LocatorPattern {
+
+  /** The locator strategy of the formatted pattern. */
+  How value() default How.XPATH;
+}
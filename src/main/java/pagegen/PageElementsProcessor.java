@@ -0,0 +1,349 @@
+package pagegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import org.openqa.selenium.support.CacheLookup;
+import org.openqa.selenium.support.FindBy;
+import org.openqa.selenium.support.How;
+
+/**
+ * Generates a {@code <Page>Elements} class next to every page class with {@link FindBy} fields or
+ * {@link LocatorPattern} constants. The generated class holds the locators built once at class
+ * initialization, factory methods of the pattern locators with a cache of built locators, and a
+ * {@code bind(page, context)} method that assigns lazily located elements to the page fields
+ * without reflection. Fields annotated with {@link CacheLookup} keep the located element until it
+ * goes stale. Bound fields must not be private.
+ */
+@SupportedAnnotationTypes({"org.openqa.selenium.support.FindBy", "pagegen.LocatorPattern"})
+public class PageElementsProcessor extends AbstractProcessor {
+
+  private static final String WEB_ELEMENT = "org.openqa.selenium.WebElement";
+  private static final String WEB_ELEMENT_LIST = "java.util.List<" + WEB_ELEMENT + ">";
+  private static final String PATTERN_SUFFIX = "_PATTERN";
+  private static final int PATTERN_CACHE_SIZE = 1000;
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Map<TypeElement, List<VariableElement>> fieldsByPage = new LinkedHashMap<>();
+    collect(roundEnv.getElementsAnnotatedWith(FindBy.class), fieldsByPage);
+    collect(roundEnv.getElementsAnnotatedWith(LocatorPattern.class), fieldsByPage);
+    fieldsByPage.forEach(this::generate);
+    // Do not claim FindBy so that other processors can see it as well
+    return false;
+  }
+
+  private void collect(
+      Set<? extends Element> elements, Map<TypeElement, List<VariableElement>> fieldsByPage) {
+    for (Element element : elements) {
+      if (element.getKind() != ElementKind.FIELD) {
+        continue;
+      }
+      TypeElement page = (TypeElement) element.getEnclosingElement();
+      fieldsByPage.computeIfAbsent(page, p -> new ArrayList<>()).add((VariableElement) element);
+    }
+  }
+
+  private void generate(TypeElement page, List<VariableElement> fields) {
+    String packageName = packageOf(page);
+    String pageName = page.getSimpleName().toString();
+    String className = pageName + "Elements";
+
+    StringBuilder constants = new StringBuilder();
+    StringBuilder patterns = new StringBuilder();
+    StringBuilder bindings = new StringBuilder();
+    for (VariableElement field : fields) {
+      FindBy findBy = field.getAnnotation(FindBy.class);
+      if (findBy != null) {
+        String constant = toConstantName(field.getSimpleName().toString());
+        constants.append(
+            String.format("  static final By %s = %s;%n", constant, locatorOf(findBy, field)));
+        String binding = bindingOf(field, constant);
+        if (binding != null) {
+          bindings.append(binding);
+        }
+      }
+      LocatorPattern pattern = field.getAnnotation(LocatorPattern.class);
+      if (pattern != null) {
+        patterns.append(patternMethodOf(field, pattern.value()));
+      }
+    }
+
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source
+        .append("import java.util.Map;\n")
+        .append("import java.util.concurrent.ConcurrentHashMap;\n")
+        .append("import org.openqa.selenium.By;\n")
+        .append("import org.openqa.selenium.SearchContext;\n\n")
+        .append("/** Locators and element bindings of {@link ")
+        .append(pageName)
+        .append("}. Generated by ")
+        .append(getClass().getSimpleName())
+        .append(", do not edit. */\n")
+        .append("final class ")
+        .append(className)
+        .append(" {\n\n")
+        .append(constants)
+        .append(patterns)
+        .append("\n  static void bind(")
+        .append(pageName)
+        .append(" page, SearchContext context) {\n")
+        .append(bindings)
+        .append("  }\n\n")
+        .append("  private static By cached(Map<String, By> cache, String key, By locator) {\n")
+        .append("    if (cache.size() >= ")
+        .append(PATTERN_CACHE_SIZE)
+        .append(") {\n")
+        .append("      cache.clear();\n")
+        .append("    }\n")
+        .append("    By cachedLocator = cache.putIfAbsent(key, locator);\n")
+        .append("    return cachedLocator == null ? locator : cachedLocator;\n")
+        .append("  }\n\n")
+        .append("  private ")
+        .append(className)
+        .append("() {}\n")
+        .append("}\n");
+
+    String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+    try (Writer writer =
+        processingEnv.getFiler().createSourceFile(qualifiedName, page).openWriter()) {
+      writer.write(source.toString());
+    } catch (IOException e) {
+      error(page, "Failed to generate " + qualifiedName + ": " + e.getMessage());
+    }
+  }
+
+  private String bindingOf(VariableElement field, String constant) {
+    if (field.getModifiers().contains(Modifier.PRIVATE)
+        || field.getModifiers().contains(Modifier.STATIC)
+        || field.getModifiers().contains(Modifier.FINAL)) {
+      error(field, "@FindBy field must be a non-private, non-static and non-final field");
+      return null;
+    }
+    String type = field.asType().toString();
+    String elementClass;
+    if (WEB_ELEMENT.equals(type)) {
+      elementClass = "LocatedElement";
+    } else if (WEB_ELEMENT_LIST.equals(type)) {
+      elementClass = "LocatedElementList";
+    } else {
+      error(field, "@FindBy field must be a WebElement or a List<WebElement>, not " + type);
+      return null;
+    }
+    boolean cacheLookup = field.getAnnotation(CacheLookup.class) != null;
+    return String.format(
+        "    page.%s = new %s(context, %s, %s);%n",
+        field.getSimpleName(), elementClass, constant, cacheLookup);
+  }
+
+  private String patternMethodOf(VariableElement field, How how) {
+    String name = field.getSimpleName().toString();
+    Object value = field.getConstantValue();
+    if (!(value instanceof String) || !isString(field.asType())) {
+      error(field, "@LocatorPattern field must be a String constant");
+      return "";
+    }
+    String pattern = (String) value;
+    int arguments;
+    try {
+      arguments = countArguments(pattern);
+    } catch (IllegalArgumentException e) {
+      error(field, "@LocatorPattern " + e.getMessage());
+      return "";
+    }
+    String baseName =
+        name.endsWith(PATTERN_SUFFIX)
+            ? name.substring(0, name.length() - PATTERN_SUFFIX.length())
+            : name;
+    String methodName = toCamelCase(baseName);
+    String cacheName = baseName + "_CACHE";
+
+    List<String> parameters = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < arguments; i++) {
+      parameters.add("String arg" + i);
+      names.add("arg" + i);
+    }
+    String key = names.isEmpty() ? "\"\"" : String.join(" + '\\0' + ", names);
+    String format =
+        names.isEmpty()
+            ? literal(pattern)
+            : String.format("String.format(%s, %s)", literal(pattern), String.join(", ", names));
+    return String.format(
+        "%n  private static final Map<String, By> %s = new ConcurrentHashMap<>();%n%n"
+            + "  static By %s(%s) {%n"
+            + "    String key = %s;%n"
+            + "    By locator = %s.get(key);%n"
+            + "    return locator != null ? locator : cached(%s, key, %s);%n"
+            + "  }%n",
+        cacheName,
+        methodName,
+        String.join(", ", parameters),
+        key,
+        cacheName,
+        cacheName,
+        byExpression(how, format));
+  }
+
+  private String locatorOf(FindBy findBy, VariableElement field) {
+    if (findBy.how() != How.UNSET && !findBy.using().isEmpty()) {
+      return byExpression(findBy.how(), literal(findBy.using()));
+    }
+    if (!findBy.id().isEmpty()) {
+      return byExpression(How.ID, literal(findBy.id()));
+    }
+    if (!findBy.name().isEmpty()) {
+      return byExpression(How.NAME, literal(findBy.name()));
+    }
+    if (!findBy.className().isEmpty()) {
+      return byExpression(How.CLASS_NAME, literal(findBy.className()));
+    }
+    if (!findBy.css().isEmpty()) {
+      return byExpression(How.CSS, literal(findBy.css()));
+    }
+    if (!findBy.tagName().isEmpty()) {
+      return byExpression(How.TAG_NAME, literal(findBy.tagName()));
+    }
+    if (!findBy.linkText().isEmpty()) {
+      return byExpression(How.LINK_TEXT, literal(findBy.linkText()));
+    }
+    if (!findBy.partialLinkText().isEmpty()) {
+      return byExpression(How.PARTIAL_LINK_TEXT, literal(findBy.partialLinkText()));
+    }
+    if (!findBy.xpath().isEmpty()) {
+      return byExpression(How.XPATH, literal(findBy.xpath()));
+    }
+    error(field, "@FindBy does not define a locator");
+    return "null";
+  }
+
+  private static String byExpression(How how, String argument) {
+    switch (how) {
+      case CLASS_NAME:
+        return "By.className(" + argument + ")";
+      case CSS:
+        return "By.cssSelector(" + argument + ")";
+      case ID:
+      case UNSET:
+        return "By.id(" + argument + ")";
+      case ID_OR_NAME:
+        return "new org.openqa.selenium.support.ByIdOrName(" + argument + ")";
+      case LINK_TEXT:
+        return "By.linkText(" + argument + ")";
+      case NAME:
+        return "By.name(" + argument + ")";
+      case PARTIAL_LINK_TEXT:
+        return "By.partialLinkText(" + argument + ")";
+      case TAG_NAME:
+        return "By.tagName(" + argument + ")";
+      case XPATH:
+      default:
+        return "By.xpath(" + argument + ")";
+    }
+  }
+
+  /**
+   * Counts the {@code %s} arguments of the pattern, a {@code %%} is a literal percent sign.
+   *
+   * @throws IllegalArgumentException if the pattern has any other format specifier, the generated
+   *     method would not take the arguments it needs
+   */
+  private static int countArguments(String pattern) {
+    int count = 0;
+    for (int i = pattern.indexOf('%'); i >= 0; i = pattern.indexOf('%', i + 2)) {
+      String specifier = pattern.substring(i, Math.min(i + 2, pattern.length()));
+      if ("%s".equals(specifier)) {
+        count++;
+      } else if (!"%%".equals(specifier)) {
+        throw new IllegalArgumentException(
+            "supports only %s and %% format specifiers, not " + specifier + " at index " + i);
+      }
+    }
+    return count;
+  }
+
+  private static boolean isString(TypeMirror type) {
+    return type instanceof DeclaredType && "java.lang.String".equals(type.toString());
+  }
+
+  private static String packageOf(Element element) {
+    Element current = element;
+    while (!(current instanceof PackageElement)) {
+      current = current.getEnclosingElement();
+    }
+    return ((PackageElement) current).getQualifiedName().toString();
+  }
+
+  /** Converts {@code messageInput} to {@code MESSAGE_INPUT}. */
+  private static String toConstantName(String fieldName) {
+    return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+  }
+
+  /** Converts {@code CHANNEL_XPATH} to {@code channelXpath}. */
+  private static String toCamelCase(String constantName) {
+    StringBuilder name = new StringBuilder();
+    for (String part : constantName.toLowerCase().split("_")) {
+      if (part.isEmpty()) {
+        continue;
+      }
+      name.append(
+          name.length() == 0 ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+    }
+    return name.toString();
+  }
+
+  private static String literal(String value) {
+    StringBuilder literal = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':
+          literal.append("\\\"");
+          break;
+        case '\\':
+          literal.append("\\\\");
+          break;
+        case '\n':
+          literal.append("\\n");
+          break;
+        case '\r':
+          literal.append("\\r");
+          break;
+        case '\t':
+          literal.append("\\t");
+          break;
+        default:
+          literal.append(c);
+      }
+    }
+    return literal.append('"').toString();
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+}
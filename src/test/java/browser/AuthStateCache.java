@@ -0,0 +1,221 @@
+package browser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-worker cache of authenticated browser state. After the first sign in of a worker the cookies
+ * of the whole browser and the local/session storage of the client page are captured. Later sign
+ * ins of the same user at the same workspace restore that state directly instead of going through
+ * the login form. A worker missing a state adopts the one left by a finished worker thread. Entries
+ * expire after {@code auth_cache_ttl_minutes} (30 by default). The cache is disabled with {@code
+ * -Dauth_cache=false} and bypassed by the {@link Browser#setIsolated isolated} threads.
+ */
+public final class AuthStateCache {
+
+  private static final Logger log = LoggerFactory.getLogger(AuthStateCache.class);
+  private static final boolean ENABLED =
+      Boolean.parseBoolean(System.getProperty("auth_cache", "true"));
+  private static final long TTL_IN_MILLIS =
+      TimeUnit.MINUTES.toMillis(Long.getLong("auth_cache_ttl_minutes", 30));
+  private static final String[] COOKIE_FIELDS = {
+    "name", "value", "domain", "path", "secure", "httpOnly", "sameSite", "expires"
+  };
+  private static final String CAPTURE_STORAGE_JS =
+      "var dump = function (storage) {"
+          + "  var items = {};"
+          + "  for (var i = 0; i < storage.length; i++) {"
+          + "    items[storage.key(i)] = storage.getItem(storage.key(i));"
+          + "  }"
+          + "  return items;"
+          + "};"
+          + "return {"
+          + "  origin: location.origin,"
+          + "  local: dump(window.localStorage),"
+          + "  session: dump(window.sessionStorage)"
+          + "};";
+  private static final String RESTORE_STORAGE_JS_PATTERN =
+      "(function (state) {"
+          + "  if (location.origin !== state.origin) return;"
+          + "  Object.keys(state.local).forEach(function (k) {"
+          + "    window.localStorage.setItem(k, state.local[k]);"
+          + "  });"
+          + "  Object.keys(state.session).forEach(function (k) {"
+          + "    window.sessionStorage.setItem(k, state.session[k]);"
+          + "  });"
+          + "})(%s);";
+
+  private static final Json JSON = new Json();
+  private static final Map<Thread, Map<String, AuthState>> WORKERS = new ConcurrentHashMap<>();
+  private static final ThreadLocal<Map<String, AuthState>> CACHE =
+      ThreadLocal.withInitial(
+          () -> {
+            Map<String, AuthState> cache = new ConcurrentHashMap<>();
+            WORKERS.put(Thread.currentThread(), cache);
+            return cache;
+          });
+
+  /**
+   * Captures the authenticated state of the current browser. Supposed to be called on the client
+   * page right after a successful sign in.
+   */
+  @SuppressWarnings("unchecked")
+  public static void capture(String workspaceUrl, String user) {
+    if (!ENABLED) {
+      return;
+    }
+    try {
+      List<Map<String, Object>> cookies =
+          (List<Map<String, Object>>) DevTools.send("Network.getAllCookies").get("cookies");
+      Map<String, Object> storage = (Map<String, Object>) Browser.execute(CAPTURE_STORAGE_JS);
+      if (cookies == null || storage == null) {
+        return;
+      }
+      AuthState state =
+          new AuthState(Browser.driver().getCurrentUrl(), toCookieParams(cookies), storage);
+      CACHE.get().put(key(workspaceUrl, user), state);
+      log.info("Captured authentication state of {} at {}", user, workspaceUrl);
+    } catch (Exception e) {
+      log.warn("Failed to capture authentication state: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Restores the cached state into the current browser and opens the client page it was captured
+   * at. Returns false if there is no valid cached state. The caller is responsible to check that
+   * the client page is really opened and to {@link #invalidate} the state otherwise.
+   */
+  public static boolean restore(String workspaceUrl, String user) {
+    if (!ENABLED || Browser.isIsolated()) {
+      return false;
+    }
+    AuthState state = CACHE.get().get(key(workspaceUrl, user));
+    if (state == null) {
+      state = adoptFinishedWorkers(key(workspaceUrl, user));
+    }
+    if (state == null) {
+      return false;
+    }
+    if (state.isExpired()) {
+      log.info("Cached authentication state of {} at {} expired", user, workspaceUrl);
+      invalidate(workspaceUrl, user);
+      return false;
+    }
+    try {
+      DevTools.send("Network.clearBrowserCookies");
+      DevTools.send("Network.setCookies", Collections.singletonMap("cookies", state.cookies));
+      String script = String.format(RESTORE_STORAGE_JS_PATTERN, JSON.toJson(state.storage));
+      Object scriptId =
+          DevTools.send(
+                  "Page.addScriptToEvaluateOnNewDocument",
+                  Collections.singletonMap("source", script))
+              .get("identifier");
+      try {
+        Browser.driver().get(state.clientUrl);
+      } finally {
+        DevTools.send(
+            "Page.removeScriptToEvaluateOnNewDocument",
+            Collections.singletonMap("identifier", scriptId));
+      }
+      log.info("Restored authentication state of {} at {}", user, workspaceUrl);
+      return true;
+    } catch (Exception e) {
+      log.warn("Failed to restore authentication state: {}", e.getMessage());
+      invalidate(workspaceUrl, user);
+      return false;
+    }
+  }
+
+  /** Drops the cached state and the cookies it may have left in the current browser. */
+  public static void invalidate(String workspaceUrl, String user) {
+    if (CACHE.get().remove(key(workspaceUrl, user)) == null || !Browser.isStarted()) {
+      return;
+    }
+    try {
+      DevTools.send("Network.clearBrowserCookies");
+    } catch (Exception e) {
+      log.warn("Failed to clear browser cookies: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Moves the state cached by a terminated worker thread to the current one. A terminated worker is
+   * forgotten once it has no valid state left, so the map does not keep dead threads.
+   */
+  private static AuthState adoptFinishedWorkers(String key) {
+    AuthState adopted = null;
+    for (Iterator<Map.Entry<Thread, Map<String, AuthState>>> workers =
+            WORKERS.entrySet().iterator();
+        workers.hasNext(); ) {
+      Map.Entry<Thread, Map<String, AuthState>> worker = workers.next();
+      if (worker.getKey().isAlive()) {
+        continue;
+      }
+      Map<String, AuthState> states = worker.getValue();
+      AuthState state = adopted == null ? states.remove(key) : null;
+      if (state != null) {
+        CACHE.get().put(key, state);
+        log.info("Adopted authentication state of finished worker {}", worker.getKey().getName());
+        adopted = state;
+      }
+      states.values().removeIf(AuthState::isExpired);
+      if (states.isEmpty()) {
+        workers.remove();
+      }
+    }
+    return adopted;
+  }
+
+  private static String key(String workspaceUrl, String user) {
+    return user + "@" + workspaceUrl.toLowerCase();
+  }
+
+  /** Keeps only the cookie fields accepted by the DevTools {@code Network.setCookies} command. */
+  private static List<Map<String, Object>> toCookieParams(List<Map<String, Object>> cookies) {
+    List<Map<String, Object>> params = new ArrayList<>();
+    for (Map<String, Object> cookie : cookies) {
+      Map<String, Object> param = new HashMap<>();
+      for (String field : COOKIE_FIELDS) {
+        if (cookie.containsKey(field)) {
+          param.put(field, cookie.get(field));
+        }
+      }
+      if (Boolean.TRUE.equals(cookie.get("session"))) {
+        param.remove("expires");
+      }
+      params.add(param);
+    }
+    return params;
+  }
+
+  private static final class AuthState {
+
+    private final String clientUrl;
+    private final List<Map<String, Object>> cookies;
+    private final Map<String, Object> storage;
+    private final long expiresAt;
+
+    private AuthState(
+        String clientUrl, List<Map<String, Object>> cookies, Map<String, Object> storage) {
+      this.clientUrl = clientUrl;
+      this.cookies = cookies;
+      this.storage = storage;
+      this.expiresAt = System.currentTimeMillis() + TTL_IN_MILLIS;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
+
+  private AuthStateCache() {}
+}
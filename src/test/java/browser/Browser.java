@@ -5,15 +5,22 @@ import static org.openqa.selenium.remote.CapabilityType.ForSeleniumServer.ENSURI
 import static org.openqa.selenium.remote.CapabilityType.HAS_NATIVE_EVENTS;
 import static org.openqa.selenium.remote.CapabilityType.UNEXPECTED_ALERT_BEHAVIOUR;
 
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import metrics.LatencyRecorder;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.interactions.Actions;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+import org.openqa.selenium.logging.LoggingPreferences;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +29,11 @@ public class Browser {
 
   private static final Logger log = LoggerFactory.getLogger(Browser.class);
   private static final long WAIT_TIMEOUT_IN_SECONDS = 30;
+  private static final long SCRIPT_TIMEOUT_IN_SECONDS = 300;
   private static final Dimension BROWSER_SIZE = new Dimension(1440, 900);
+  private static final String CHROME_LOGGING_PREFS = "goog:loggingPrefs";
   private static final ThreadLocal<WebDriver> WEB_DRIVER = new ThreadLocal<>();
+  private static final ThreadLocal<Boolean> ISOLATED = ThreadLocal.withInitial(() -> false);
 
   public static WebDriver driver() {
     return WEB_DRIVER.get();
@@ -33,6 +43,41 @@ public class Browser {
     if (isStarted()) {
       return;
     }
+    if (isShared()) {
+      WEB_DRIVER.set(BrowserContexts.acquire());
+    } else {
+      WEB_DRIVER.set(isPooled() ? SessionPool.acquire() : launch());
+    }
+    NetworkProfile.startSession();
+  }
+
+  /** Fails fast on browser flags that cannot be combined, called once at the start of the run. */
+  public static void checkFlags() {
+    BrowserContexts.checkFlags();
+  }
+
+  /**
+   * Makes the browsers started by the current thread isolated: launched fresh instead of taken
+   * from the session pool and signed in through the login form instead of the cached state.
+   */
+  public static void setIsolated(boolean isolated) {
+    ISOLATED.set(isolated);
+  }
+
+  public static boolean isIsolated() {
+    return ISOLATED.get();
+  }
+
+  private static boolean isShared() {
+    return BrowserContexts.isEnabled() && !isIsolated();
+  }
+
+  private static boolean isPooled() {
+    return SessionPool.isEnabled() && !isShared() && !isIsolated();
+  }
+
+  /** Launches a new browser session that is not bound to any thread. */
+  static WebDriver launch() {
     log.info("Starting browser");
     ChromeOptions chromeOptions =
         new ChromeOptions()
@@ -43,6 +88,7 @@ public class Browser {
                 "disable-infobars",
                 "disable-plugins",
                 "disable-print-preview");
+    BrowserProfile.CURRENT.configure(chromeOptions);
 
     DesiredCapabilities caps = new DesiredCapabilities();
     caps.setCapability(ENSURING_CLEAN_SESSION, true);
@@ -51,9 +97,34 @@ public class Browser {
 
     chromeOptions.merge(caps);
 
-    WebDriver webDriver = new ChromeDriver(chromeOptions);
-    WEB_DRIVER.set(webDriver);
+    LoggingPreferences loggingPrefs = new LoggingPreferences();
+    loggingPrefs.enable(LogType.BROWSER, Level.ALL);
+    chromeOptions.setCapability(CHROME_LOGGING_PREFS, loggingPrefs);
+
+    // Same as ChromeDriver, with every command timed for the latency report
+    long start = System.nanoTime();
+    TimedCommandExecutor executor = new TimedCommandExecutor(BrowserProfile.CURRENT.executor());
+    WebDriver webDriver = new RemoteWebDriver(executor, chromeOptions);
+    LaunchReport.launched(webDriver, start);
+    // Asynchronous scripts used by DomWait end by their own timeouts
+    webDriver.manage().timeouts().setScriptTimeout(SCRIPT_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
     log.info("Browser started");
+    return webDriver;
+  }
+
+  /**
+   * Starts a session attached to the Chrome process running at the debugger address, the session
+   * does not own the process. Always started by a local chromedriver.
+   */
+  static WebDriver attach(String debuggerAddress) {
+    ChromeOptions chromeOptions = new ChromeOptions();
+    chromeOptions.setExperimentalOption("debuggerAddress", debuggerAddress);
+    TimedCommandExecutor executor =
+        new TimedCommandExecutor(BrowserProfile.CURRENT.localExecutor());
+    WebDriver webDriver = new RemoteWebDriver(executor, chromeOptions);
+    webDriver.manage().timeouts().setScriptTimeout(SCRIPT_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+    log.info("Attached browser session to {}", debuggerAddress);
+    return webDriver;
   }
 
   public static void quit() {
@@ -61,10 +132,38 @@ public class Browser {
       return;
     }
     log.info("Closing browser");
-    driver().quit();
+    if (isShared()) {
+      NetworkProfile.quit(driver());
+      BrowserContexts.release();
+      WEB_DRIVER.set(null);
+      return;
+    }
+    LaunchReport.quitting(driver());
+    if (isPooled()) {
+      SessionPool.release(driver());
+    } else {
+      NetworkProfile.quit(driver());
+      driver().quit();
+    }
     WEB_DRIVER.set(null);
   }
 
+  /**
+   * Quits the browser sessions kept in the pool, stops the shared chromedriver, saves the wait
+   * history and reports the browser launches. Called once at the end of the test run.
+   */
+  public static void shutdown() {
+    if (SessionPool.isEnabled()) {
+      SessionPool.shutdown();
+    }
+    if (BrowserContexts.isEnabled()) {
+      BrowserContexts.shutdown();
+    }
+    BrowserProfile.stopSharedService();
+    WaitHistory.save();
+    LaunchReport.write();
+  }
+
   public static WebDriverWait waiting() {
     return waiting(WAIT_TIMEOUT_IN_SECONDS);
   }
@@ -73,6 +172,31 @@ public class Browser {
     return new WebDriverWait(driver(), sec);
   }
 
+  /**
+   * Returns a named wait with backoff polling. Its timeout is derived from the latencies of the
+   * wait recorded in the previous runs and is never longer than the default timeout.
+   */
+  public static NamedWait waiting(String name) {
+    return waiting(name, WAIT_TIMEOUT_IN_SECONDS);
+  }
+
+  public static NamedWait waiting(String name, long maxSec) {
+    return waiting(name, maxSec, WaitPolicy.DEFAULT);
+  }
+
+  public static NamedWait waiting(String name, long maxSec, WaitPolicy policy) {
+    return NamedWait.create(driver(), name, maxSec, policy);
+  }
+
+  /** Returns an event-driven wait that can be used instead of {@link #waiting()} per call. */
+  public static DomWait observing() {
+    return observing(WAIT_TIMEOUT_IN_SECONDS);
+  }
+
+  public static DomWait observing(long sec) {
+    return new DomWait(Math.min(sec, SCRIPT_TIMEOUT_IN_SECONDS));
+  }
+
   public static boolean isStarted() {
     return driver() != null;
   }
@@ -96,11 +220,46 @@ public class Browser {
 
   public static Object execute(String js, Object... args) {
     JavascriptExecutor executor = (JavascriptExecutor) driver();
+    long start = System.nanoTime();
     try {
       return executor.executeScript(js, args);
     } catch (Exception e) {
       log.error("Failed to execute JS", e);
       return null;
+    } finally {
+      LatencyRecorder.record("Browser.execute", start);
+    }
+  }
+
+  /**
+   * Executes the asynchronous script in the current browser, the script ends by calling the
+   * callback passed as the last argument. Returns null if the script failed.
+   */
+  public static Object executeAsync(String js, Object... args) {
+    JavascriptExecutor executor = (JavascriptExecutor) driver();
+    long start = System.nanoTime();
+    try {
+      return executor.executeAsyncScript(js, args);
+    } catch (Exception e) {
+      log.error("Failed to execute asynchronous JS", e);
+      return null;
+    } finally {
+      LatencyRecorder.record("Browser.executeAsync", start);
+    }
+  }
+
+  /** Returns the browser console entries logged since the previous call. */
+  public static String consoleLog() {
+    if (!isStarted()) {
+      return "";
+    }
+    try {
+      return driver().manage().logs().get(LogType.BROWSER).getAll().stream()
+          .map(LogEntry::toString)
+          .collect(Collectors.joining("\n"));
+    } catch (Exception e) {
+      log.warn("Failed to read browser console log:\n{}", e.getMessage());
+      return "";
     }
   }
 
@@ -0,0 +1,306 @@
+package browser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LongSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs up to {@code browser_contexts} scenarios at once in one Chrome process, each one in its own
+ * browser context with separate cookies, storage and cache. The context and its window are created
+ * with the DevTools {@code Target} commands for every scenario and disposed after it. Every worker
+ * thread drives its contexts through its own chromedriver session attached to the shared Chrome by
+ * its debugger address, so the commands of the workers do not interfere. More Chrome processes are
+ * launched once all of them run as many contexts as allowed, and in place of a Chrome process that
+ * does not respond any more. Requires local chromedriver servers, the debugger address of a Chrome
+ * process is not reachable from another machine, so {@code selenium_remote_url} is rejected.
+ */
+final class BrowserContexts {
+
+  private static final Logger log = LoggerFactory.getLogger(BrowserContexts.class);
+  private static final int PER_PROCESS = Integer.getInteger("browser_contexts", 0);
+  private static final long WINDOW_TIMEOUT_IN_SECONDS = 10;
+
+  private static final List<Host> HOSTS = new ArrayList<>();
+  private static final Set<WebDriver> ATTACHED = ConcurrentHashMap.newKeySet();
+  private static final ThreadLocal<Attachment> ATTACHMENT = new ThreadLocal<>();
+  private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<>();
+  private static final LongSummaryStatistics kbPerContext = new LongSummaryStatistics();
+
+  private static int active;
+  private static int peakActive;
+  private static long created;
+  private static int replaced;
+
+  static boolean isEnabled() {
+    return PER_PROCESS > 0;
+  }
+
+  /**
+   * Creates a browser context with one window for the scenario of the current thread and returns
+   * the session of the thread switched to that window.
+   */
+  static WebDriver acquire() {
+    Attachment attachment = ATTACHMENT.get();
+    Host host = null;
+    while (host == null) {
+      Host candidate;
+      synchronized (BrowserContexts.class) {
+        candidate =
+            attachment != null && attachment.host.contexts < PER_PROCESS
+                ? attachment.host
+                : HOSTS.stream().filter(h -> h.contexts < PER_PROCESS).findFirst().orElse(null);
+        if (candidate == null) {
+          candidate = new Host();
+          HOSTS.add(candidate);
+        }
+        candidate.contexts++;
+      }
+      if (candidate.isResponding()) {
+        host = candidate;
+      } else {
+        replace(candidate);
+      }
+    }
+    synchronized (BrowserContexts.class) {
+      active++;
+      peakActive = Math.max(peakActive, active);
+    }
+    String contextId = null;
+    try {
+      host.start();
+      if (attachment == null || attachment.host != host) {
+        if (attachment != null) {
+          quit(attachment.driver);
+        }
+        attachment = new Attachment(host, Browser.attach(host.debuggerAddress));
+        ATTACHED.add(attachment.driver);
+        ATTACHMENT.set(attachment);
+      }
+      WebDriver driver = attachment.driver;
+      driver.switchTo().window(host.blankWindow);
+      contextId =
+          (String)
+              DevTools.send(driver, "Target.createBrowserContext", Collections.emptyMap())
+                  .get("browserContextId");
+      Map<String, Object> target = new HashMap<>();
+      target.put("url", "about:blank");
+      target.put("browserContextId", contextId);
+      String targetId =
+          (String) DevTools.send(driver, "Target.createTarget", target).get("targetId");
+      // The window handles of chromedriver are the DevTools target ids, older versions prefix them
+      String window =
+          new WebDriverWait(driver, WINDOW_TIMEOUT_IN_SECONDS)
+              .until(
+                  d ->
+                      d.getWindowHandles().stream()
+                          .filter(handle -> handle.endsWith(targetId))
+                          .findFirst()
+                          .orElse(null));
+      driver.switchTo().window(window);
+      CONTEXT.set(new Context(host, driver, contextId));
+      synchronized (BrowserContexts.class) {
+        created++;
+      }
+      sampleMemory();
+      return driver;
+    } catch (RuntimeException e) {
+      new Context(host, attachment == null ? null : attachment.driver, contextId).dispose();
+      throw e;
+    }
+  }
+
+  /**
+   * Fails fast on the flags the browser contexts cannot run with: the shared Chrome processes are
+   * attached to by their debugger address, which a remote server does not expose.
+   */
+  static void checkFlags() {
+    if (isEnabled() && BrowserProfile.isRemote()) {
+      throw new IllegalArgumentException(
+          "browser_contexts requires local chromedriver servers, unset selenium_remote_url");
+    }
+  }
+
+  /**
+   * Drops the host whose Chrome process does not respond, e.g. after a crash, so that the next
+   * scenarios launch a new one. The contexts running in it have failed with it.
+   */
+  private static void replace(Host host) {
+    synchronized (BrowserContexts.class) {
+      host.contexts--;
+      if (!HOSTS.remove(host)) {
+        return;
+      }
+      replaced++;
+    }
+    log.warn("Shared Chrome at {} does not respond, launching a new one", host.debuggerAddress);
+    host.quit();
+  }
+
+  /** Disposes the browser context of the scenario of the current thread with its windows. */
+  static void release() {
+    Context context = CONTEXT.get();
+    CONTEXT.remove();
+    if (context != null) {
+      context.dispose();
+    }
+  }
+
+  /** Quits the attached sessions and the shared Chrome processes, logs the context statistics. */
+  static synchronized void shutdown() {
+    new ArrayList<>(ATTACHED).forEach(BrowserContexts::quit);
+    HOSTS.forEach(Host::quit);
+    log.info(
+        "Browser contexts: {} created in {} Chrome process(es), {} replaced after not responding, "
+            + "{} at most at once, Chrome RSS per concurrent context mean {} MB, max {} MB",
+        created,
+        HOSTS.size() + replaced,
+        replaced,
+        peakActive,
+        kbPerContext.getCount() == 0 ? 0 : (long) kbPerContext.getAverage() / 1024,
+        kbPerContext.getCount() == 0 ? 0 : kbPerContext.getMax() / 1024);
+  }
+
+  /** Records the resident memory of the shared Chrome processes per context running now. */
+  private static void sampleMemory() {
+    if (!ProcessMemory.isSupported()) {
+      return;
+    }
+    List<WebDriver> hosts = new ArrayList<>();
+    int contexts;
+    synchronized (BrowserContexts.class) {
+      HOSTS.stream().filter(host -> host.driver != null).forEach(host -> hosts.add(host.driver));
+      contexts = active;
+    }
+    long chromeKb = hosts.stream().mapToLong(LaunchReport::chromeKb).sum();
+    if (chromeKb > 0 && contexts > 0) {
+      synchronized (BrowserContexts.class) {
+        kbPerContext.accept(chromeKb / contexts);
+      }
+    }
+  }
+
+  private static void quit(WebDriver driver) {
+    ATTACHED.remove(driver);
+    try {
+      // Quitting an attached session leaves the Chrome process running
+      driver.quit();
+    } catch (WebDriverException e) {
+      log.warn("Failed to quit attached browser session: {}", e.getMessage());
+    }
+  }
+
+  /** Shared Chrome process, launched by the first scenario assigned to it. */
+  private static final class Host {
+
+    private volatile WebDriver driver;
+    private String debuggerAddress;
+    private String blankWindow;
+    private int contexts;
+
+    @SuppressWarnings("unchecked")
+    private synchronized void start() {
+      if (driver != null) {
+        return;
+      }
+      WebDriver launched = Browser.launch();
+      Object chromeOptions =
+          ((HasCapabilities) launched).getCapabilities().getCapability("goog:chromeOptions");
+      Object address =
+          chromeOptions instanceof Map
+              ? ((Map<String, Object>) chromeOptions).get("debuggerAddress")
+              : null;
+      if (address == null) {
+        launched.quit();
+        throw new WebDriverException("The browser session has no debugger address to attach to");
+      }
+      debuggerAddress = (String) address;
+      blankWindow = launched.getWindowHandle();
+      driver = launched;
+      log.info("Sharing Chrome at {} by up to {} browser contexts", debuggerAddress, PER_PROCESS);
+    }
+
+    /** Returns false if the Chrome process has been launched and does not respond any more. */
+    private synchronized boolean isResponding() {
+      if (driver == null) {
+        return true;
+      }
+      try {
+        driver.getWindowHandles();
+        return true;
+      } catch (WebDriverException e) {
+        log.debug("Shared Chrome at {} failed: {}", debuggerAddress, e.getMessage());
+        return false;
+      }
+    }
+
+    private synchronized void quit() {
+      if (driver == null) {
+        return;
+      }
+      try {
+        driver.quit();
+      } catch (WebDriverException e) {
+        log.warn("Failed to quit shared Chrome at {}: {}", debuggerAddress, e.getMessage());
+      }
+      driver = null;
+    }
+  }
+
+  /** Browser context of a scenario, counted as running in its host until disposed. */
+  private static final class Context {
+
+    private final Host host;
+    private final WebDriver driver;
+    private final String id;
+
+    private Context(Host host, WebDriver driver, String id) {
+      this.host = host;
+      this.driver = driver;
+      this.id = id;
+    }
+
+    private void dispose() {
+      try {
+        if (driver != null && id != null) {
+          driver.switchTo().window(host.blankWindow);
+          DevTools.send(
+              driver,
+              "Target.disposeBrowserContext",
+              Collections.singletonMap("browserContextId", id));
+        }
+      } catch (WebDriverException e) {
+        log.warn("Failed to dispose browser context {}: {}", id, e.getMessage());
+      } finally {
+        synchronized (BrowserContexts.class) {
+          host.contexts--;
+          active--;
+        }
+      }
+    }
+  }
+
+  /** Session of a worker thread attached to a shared Chrome process. */
+  private static final class Attachment {
+
+    private final Host host;
+    private final WebDriver driver;
+
+    private Attachment(Host host, WebDriver driver) {
+      this.host = host;
+      this.driver = driver;
+    }
+  }
+
+  private BrowserContexts() {}
+}
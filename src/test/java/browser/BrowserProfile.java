@@ -0,0 +1,128 @@
+package browser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.service.DriverCommandExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chrome launch profiles selected by the {@code browser_profile} flag. Any profile runs headless
+ * with the {@code browser_headless} flag. Images, GPU and background networking can be disabled
+ * by the {@code browser_disable_images}, {@code browser_disable_gpu} and {@code
+ * browser_disable_background_networking} flags. With {@code selenium_remote_url}, a comma
+ * separated list of Selenium server or grid URLs, the sessions are started there round robin
+ * instead of by a local chromedriver.
+ */
+enum BrowserProfile {
+
+  /** Headed Chrome, every session starts its own chromedriver server. */
+  DEFAULT {
+    @Override
+    HttpCommandExecutor localExecutor() {
+      return new DriverCommandExecutor(ChromeDriverService.createDefaultService());
+    }
+  },
+
+  /** New headless Chrome, all sessions of the JVM share one long-lived chromedriver server. */
+  LIGHT {
+    @Override
+    HttpCommandExecutor localExecutor() {
+      return new HttpCommandExecutor(sharedServiceUrl());
+    }
+  };
+
+  static final BrowserProfile CURRENT =
+      valueOf(System.getProperty("browser_profile", "default").toUpperCase(Locale.ROOT));
+
+  private static final Logger log = LoggerFactory.getLogger(BrowserProfile.class);
+  private static final boolean HEADLESS = Boolean.getBoolean("browser_headless");
+  private static final boolean DISABLE_IMAGES = Boolean.getBoolean("browser_disable_images");
+  private static final boolean DISABLE_GPU = Boolean.getBoolean("browser_disable_gpu");
+  private static final boolean DISABLE_BACKGROUND_NETWORKING =
+      Boolean.getBoolean("browser_disable_background_networking");
+  private static final List<URL> REMOTE_URLS = remoteUrls();
+  private static final AtomicInteger nextRemote = new AtomicInteger();
+
+  private static ChromeDriverService sharedService;
+
+  void configure(ChromeOptions options) {
+    if (this == LIGHT || HEADLESS) {
+      options.addArguments("headless=new", "window-size=1440,900");
+    }
+    if (DISABLE_IMAGES) {
+      options.addArguments("blink-settings=imagesEnabled=false");
+    }
+    if (DISABLE_GPU) {
+      options.addArguments("disable-gpu");
+    }
+    if (DISABLE_BACKGROUND_NETWORKING) {
+      options.addArguments("disable-background-networking");
+    }
+  }
+
+  /** Returns whether the sessions are started at the servers of {@code selenium_remote_url}. */
+  static boolean isRemote() {
+    return !REMOTE_URLS.isEmpty();
+  }
+
+  /** Returns the executor sending the commands of a new session to its driver server. */
+  HttpCommandExecutor executor() {
+    if (REMOTE_URLS.isEmpty()) {
+      return localExecutor();
+    }
+    int next = Math.floorMod(nextRemote.getAndIncrement(), REMOTE_URLS.size());
+    return new HttpCommandExecutor(REMOTE_URLS.get(next));
+  }
+
+  abstract HttpCommandExecutor localExecutor();
+
+  private static List<URL> remoteUrls() {
+    List<URL> urls = new ArrayList<>();
+    for (String url : System.getProperty("selenium_remote_url", "").split(",")) {
+      if (url.trim().isEmpty()) {
+        continue;
+      }
+      try {
+        urls.add(new URL(url.trim()));
+      } catch (MalformedURLException e) {
+        throw new IllegalArgumentException("Invalid selenium_remote_url " + url, e);
+      }
+    }
+    if (!urls.isEmpty()) {
+      log.info("Starting browser sessions at {}", urls);
+    }
+    return urls;
+  }
+
+  private static synchronized URL sharedServiceUrl() {
+    if (sharedService == null) {
+      ChromeDriverService service = ChromeDriverService.createDefaultService();
+      try {
+        service.start();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to start chromedriver", e);
+      }
+      log.info("Started shared chromedriver at {}", service.getUrl());
+      sharedService = service;
+    }
+    return sharedService.getUrl();
+  }
+
+  /** Stops the shared chromedriver server. Called once the sessions of the run are quit. */
+  static synchronized void stopSharedService() {
+    if (sharedService != null) {
+      sharedService.stop();
+      sharedService = null;
+    }
+  }
+}
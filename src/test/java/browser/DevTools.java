@@ -0,0 +1,94 @@
+package browser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import metrics.LatencyRecorder;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+
+/**
+ * Sends Chrome DevTools Protocol commands through the ChromeDriver {@code goog/cdp/execute}
+ * endpoint. Selenium 3 has no client API for that endpoint, so the command is posted directly to
+ * the driver server that owns the session.
+ */
+public final class DevTools {
+
+  private static final Json JSON = new Json();
+  private static final HttpClient.Factory CLIENT_FACTORY = HttpClient.Factory.createDefault();
+  private static final Map<URL, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+  /** Sends a DevTools command without parameters to the browser of the current thread. */
+  public static Map<String, Object> send(String method) {
+    return send(Browser.driver(), method, Collections.emptyMap());
+  }
+
+  /** Sends a DevTools command to the browser of the current thread. */
+  public static Map<String, Object> send(String method, Map<String, Object> params) {
+    return send(Browser.driver(), method, params);
+  }
+
+  /**
+   * Sends a DevTools command to the given browser session and returns the command result.
+   *
+   * @throws WebDriverException if the driver server rejects the command
+   */
+  public static Map<String, Object> send(
+      WebDriver driver, String method, Map<String, Object> params) {
+    RemoteWebDriver remoteDriver = (RemoteWebDriver) driver;
+
+    Map<String, Object> body = new HashMap<>();
+    body.put("cmd", method);
+    body.put("params", params);
+    HttpRequest request =
+        new HttpRequest(
+            HttpMethod.POST,
+            String.format("/session/%s/goog/cdp/execute", remoteDriver.getSessionId()));
+    request.setHeader("Content-Type", "application/json; charset=utf-8");
+    request.setContent(JSON.toJson(body).getBytes(UTF_8));
+
+    HttpResponse response;
+    long start = System.nanoTime();
+    try {
+      URL serverUrl = serverUrlOf(remoteDriver.getCommandExecutor());
+      HttpClient client = CLIENTS.computeIfAbsent(serverUrl, CLIENT_FACTORY::createClient);
+      response = client.execute(request);
+    } catch (IOException e) {
+      throw new WebDriverException("Failed to send DevTools command " + method, e);
+    } finally {
+      LatencyRecorder.record(method, start);
+    }
+    Map<String, Object> answer = JSON.toType(response.getContentString(), Json.MAP_TYPE);
+    Object value = answer.get("value");
+    if (response.getStatus() != 200) {
+      throw new WebDriverException(
+          String.format("DevTools command %s failed: %s", method, value));
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, Object> result =
+        value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    return result;
+  }
+
+  private static URL serverUrlOf(CommandExecutor executor) {
+    if (executor instanceof TimedCommandExecutor) {
+      return ((TimedCommandExecutor) executor).getAddressOfRemoteServer();
+    }
+    return ((HttpCommandExecutor) executor).getAddressOfRemoteServer();
+  }
+
+  private DevTools() {}
+}
@@ -0,0 +1,193 @@
+package browser;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event-driven alternative to {@link Browser#waiting()}. The condition is checked by a script
+ * injected into the page that subscribes to DOM changes with a MutationObserver, so the wait ends
+ * as soon as the page changes instead of at the next WebDriver poll. Falls back to polling if the
+ * script cannot be injected or the locator cannot be resolved by JavaScript.
+ */
+public final class DomWait {
+
+  private static final Logger log = LoggerFactory.getLogger(DomWait.class);
+  private static final long CHECK_THROTTLE_IN_MILLIS = 16;
+  private static final String OBSERVE_JS =
+      JsLocator.FIND_ALL_JS
+          + "var kind = arguments[0], selector = arguments[1], mode = arguments[2],"
+          + "    text = arguments[3], timeout = arguments[4], throttle = arguments[5],"
+          + "    done = arguments[arguments.length - 1];"
+          + "function find() {"
+          + "  var nodes = findAll(kind, selector);"
+          + "  for (var i = 0; i < nodes.length; i++) {"
+          + "    if (!isVisible(nodes[i])) continue;"
+          + "    var content = nodes[i].innerText || nodes[i].textContent || '';"
+          + "    if (mode === 'contains' && content.indexOf(text) < 0) continue;"
+          + "    if (mode === 'notContains' && content.indexOf(text) >= 0) continue;"
+          + "    return nodes[i];"
+          + "  }"
+          + "  return null;"
+          + "}"
+          + "var found = find();"
+          + "if (found) { done(found); return; }"
+          + "var scheduled = false, timer;"
+          + "var observer = new MutationObserver(function () {"
+          + "  if (scheduled) return;"
+          + "  scheduled = true;"
+          + "  setTimeout(function () {"
+          + "    scheduled = false;"
+          + "    var element = find();"
+          + "    if (element) { observer.disconnect(); clearTimeout(timer); done(element); }"
+          + "  }, throttle);"
+          + "});"
+          + "observer.observe(document, {"
+          + "  childList: true, subtree: true, attributes: true, characterData: true"
+          + "});"
+          + "timer = setTimeout(function () { observer.disconnect(); done(null); }, timeout);";
+  private static final String OBSERVE_ELEMENT_JS =
+      "var element = arguments[0], text = arguments[1], timeout = arguments[2],"
+          + "    throttle = arguments[3], done = arguments[arguments.length - 1];"
+          + "function check() {"
+          + "  if (!element.isConnected) return 'stale';"
+          + "  var content = element.innerText || element.textContent || '';"
+          + "  return content.indexOf(text) < 0 ? 'done' : null;"
+          + "}"
+          + "var state = check();"
+          + "if (state) { done(state); return; }"
+          + "var scheduled = false, timer;"
+          + "var observer = new MutationObserver(function () {"
+          + "  if (scheduled) return;"
+          + "  scheduled = true;"
+          + "  setTimeout(function () {"
+          + "    scheduled = false;"
+          + "    var checked = check();"
+          + "    if (checked) { observer.disconnect(); clearTimeout(timer); done(checked); }"
+          + "  }, throttle);"
+          + "});"
+          + "observer.observe(document, {"
+          + "  childList: true, subtree: true, attributes: true, characterData: true"
+          + "});"
+          + "timer = setTimeout(function () { observer.disconnect(); done(null); }, timeout);";
+
+  private final long timeoutInSeconds;
+  private String message;
+
+  DomWait(long timeoutInSeconds) {
+    this.timeoutInSeconds = timeoutInSeconds;
+  }
+
+  public DomWait withMessage(String message) {
+    this.message = message;
+    return this;
+  }
+
+  /** Waits for the first visible element matching the locator. */
+  public WebElement untilVisible(By locator) {
+    return until(locator, null, null);
+  }
+
+  /** Waits for the first visible element matching the locator that contains the text. */
+  public WebElement untilTextContains(By locator, String text) {
+    return until(locator, "contains", text);
+  }
+
+  /** Waits for the first visible element matching the locator that does not contain the text. */
+  public WebElement untilTextNotContains(By locator, String text) {
+    return until(locator, "notContains", text);
+  }
+
+  /**
+   * Waits for the element to no longer contain the text.
+   *
+   * @throws StaleElementReferenceException if the element is removed from the page meanwhile
+   */
+  public void untilTextNotContains(WebElement element, String text) {
+    try {
+      Object state =
+          ((JavascriptExecutor) Browser.driver())
+              .executeAsyncScript(
+                  OBSERVE_ELEMENT_JS,
+                  element,
+                  text,
+                  TimeUnit.SECONDS.toMillis(timeoutInSeconds),
+                  CHECK_THROTTLE_IN_MILLIS);
+      if ("stale".equals(state)) {
+        throw new StaleElementReferenceException("Element is no longer attached: " + element);
+      }
+      if (!"done".equals(state)) {
+        throw new TimeoutException(timeoutMessage(element));
+      }
+    } catch (TimeoutException | StaleElementReferenceException e) {
+      throw e;
+    } catch (WebDriverException e) {
+      log.warn("Failed to observe DOM, falling back to polling: {}", e.getMessage());
+      Browser.waiting(timeoutInSeconds)
+          .withMessage(timeoutMessage(element))
+          .until(driver -> !element.getText().contains(text));
+    }
+  }
+
+  private WebElement until(By locator, String mode, String text) {
+    JsLocator jsLocator = JsLocator.of(locator);
+    if (jsLocator != null) {
+      try {
+        Object element =
+            ((JavascriptExecutor) Browser.driver())
+                .executeAsyncScript(
+                    OBSERVE_JS,
+                    jsLocator.getKind(),
+                    jsLocator.getSelector(),
+                    mode,
+                    text,
+                    TimeUnit.SECONDS.toMillis(timeoutInSeconds),
+                    CHECK_THROTTLE_IN_MILLIS);
+        if (element instanceof WebElement) {
+          return (WebElement) element;
+        }
+        throw new TimeoutException(timeoutMessage(locator));
+      } catch (TimeoutException e) {
+        throw e;
+      } catch (WebDriverException e) {
+        log.warn("Failed to observe DOM, falling back to polling: {}", e.getMessage());
+      }
+    }
+    return poll(locator, mode, text);
+  }
+
+  private WebElement poll(By locator, String mode, String text) {
+    Predicate<String> textMatches;
+    if ("contains".equals(mode)) {
+      textMatches = content -> content.contains(text);
+    } else if ("notContains".equals(mode)) {
+      textMatches = content -> !content.contains(text);
+    } else {
+      textMatches = content -> true;
+    }
+    return Browser.waiting(timeoutInSeconds)
+        .withMessage(timeoutMessage(locator))
+        .until(
+            (ExpectedCondition<WebElement>)
+                driver ->
+                    driver.findElements(locator).stream()
+                        .filter(element -> element.isDisplayed())
+                        .filter(element -> textMatches.test(element.getText()))
+                        .findFirst()
+                        .orElse(null));
+  }
+
+  private String timeoutMessage(Object target) {
+    String condition =
+        String.format("waiting for %s (tried for %d second(s))", target, timeoutInSeconds);
+    return message == null ? condition : message + "\n" + condition;
+  }
+}
@@ -0,0 +1,80 @@
+package browser;
+
+import org.openqa.selenium.By;
+
+/**
+ * Selenium locator translated to a form that can be resolved by JavaScript in the page. Used by
+ * the code that finds elements inside an injected script instead of with WebDriver commands.
+ */
+public final class JsLocator {
+
+  /**
+   * Declares a {@code findAll(kind, selector)} function that returns an array of the elements
+   * matching a translated locator. Supposed to be prepended to the scripts that use it.
+   */
+  public static final String FIND_ALL_JS =
+      "function findAll(kind, selector) {"
+          + "  if (kind === 'xpath') {"
+          + "    var snapshot = document.evaluate(selector, document, null,"
+          + "        XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);"
+          + "    var nodes = [];"
+          + "    for (var i = 0; i < snapshot.snapshotLength; i++) {"
+          + "      nodes.push(snapshot.snapshotItem(i));"
+          + "    }"
+          + "    return nodes;"
+          + "  }"
+          + "  return Array.prototype.slice.call(document.querySelectorAll(selector));"
+          + "}"
+          + "function isVisible(el) {"
+          + "  return !!(el.offsetWidth || el.offsetHeight || el.getClientRects().length)"
+          + "      && window.getComputedStyle(el).visibility !== 'hidden';"
+          + "}";
+
+  private final String kind;
+  private final String selector;
+
+  private JsLocator(String kind, String selector) {
+    this.kind = kind;
+    this.selector = selector;
+  }
+
+  /**
+   * Translates the locator. Returns null for locators that cannot be expressed as an XPath or CSS
+   * selector, such as link text locators.
+   */
+  public static JsLocator of(By locator) {
+    String description = locator.toString();
+    int separator = description.indexOf(": ");
+    if (!description.startsWith("By.") || separator < 0) {
+      return null;
+    }
+    String how = description.substring("By.".length(), separator);
+    String using = description.substring(separator + 2);
+    switch (how) {
+      case "xpath":
+        return new JsLocator("xpath", using);
+      case "cssSelector":
+        return new JsLocator("css", using);
+      case "id":
+        return new JsLocator("css", "[id='" + using + "']");
+      case "name":
+        return new JsLocator("css", "[name='" + using + "']");
+      case "className":
+        return new JsLocator("css", "." + using);
+      case "tagName":
+        return new JsLocator("css", using);
+      default:
+        return null;
+    }
+  }
+
+  /** Returns "xpath" or "css", the first argument of the {@code findAll} function. */
+  public String getKind() {
+    return kind;
+  }
+
+  /** Returns the XPath or CSS selector, the second argument of the {@code findAll} function. */
+  public String getSelector() {
+    return selector;
+  }
+}
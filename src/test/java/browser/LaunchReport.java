@@ -0,0 +1,200 @@
+package browser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import metrics.Histogram;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cold start time and resident memory of the browser sessions of the run. The memory of the Chrome
+ * processes of a session is sampled right after the launch and before the quit, the memory of the
+ * chromedriver servers is counted once per process. The processes are those of the process tree of
+ * the chromedriver servers started by this JVM: the browser process of a session is found once by
+ * its exact user data dir argument, its descendants are its renderer and helper processes. The
+ * summary is written to {@code target/browser-profiles/<profile>.json} and compared with the
+ * summaries of the other profiles found there, so running the suite once per profile is enough to
+ * choose one.
+ */
+final class LaunchReport {
+
+  private static final Logger log = LoggerFactory.getLogger(LaunchReport.class);
+  private static final Path DIRECTORY = Paths.get("target", "browser-profiles");
+  private static final Json JSON = new Json();
+
+  private static final Histogram coldStart = new Histogram();
+  private static final LongSummaryStatistics chromeAtLaunch = new LongSummaryStatistics();
+  private static final LongSummaryStatistics chromeAtQuit = new LongSummaryStatistics();
+  private static final Map<Integer, Long> chromedrivers = new HashMap<>();
+  // The browser process and the chromedriver process of the sessions, found at the first sample
+  private static final Map<WebDriver, int[]> PROCESSES = new ConcurrentHashMap<>();
+
+  /** Records the launch of the session started at the given {@link System#nanoTime()}. */
+  static void launched(WebDriver driver, long startNanos) {
+    long micros = (System.nanoTime() - startNanos) / 1000;
+    Sample sample = Sample.of(driver);
+    synchronized (LaunchReport.class) {
+      coldStart.record(micros);
+      sample.addTo(chromeAtLaunch);
+    }
+  }
+
+  static void quitting(WebDriver driver) {
+    Sample sample = Sample.of(driver);
+    PROCESSES.remove(driver);
+    synchronized (LaunchReport.class) {
+      sample.addTo(chromeAtQuit);
+    }
+  }
+
+  /** Returns the resident memory of the Chrome processes of the session, 0 if unknown. */
+  static long chromeKb(WebDriver driver) {
+    return Sample.of(driver).chromeKb;
+  }
+
+  static synchronized void write() {
+    if (coldStart.getCount() == 0) {
+      return;
+    }
+    String profile = BrowserProfile.CURRENT.name().toLowerCase();
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("profile", profile);
+    summary.put("sessions", coldStart.getCount());
+    summary.put("cold_start", coldStart.toMap());
+    summary.put("chrome_rss_at_launch_mb", toMegabytes(chromeAtLaunch));
+    summary.put("chrome_rss_at_quit_mb", toMegabytes(chromeAtQuit));
+    summary.put("chromedriver_processes", chromedrivers.size());
+    long chromedriverKb = chromedrivers.values().stream().mapToLong(Long::longValue).sum();
+    summary.put("chromedriver_rss_mb", chromedriverKb / 1024);
+    try {
+      Files.createDirectories(DIRECTORY);
+      Files.write(DIRECTORY.resolve(profile + ".json"), JSON.toJson(summary).getBytes(UTF_8));
+    } catch (IOException e) {
+      log.warn("Failed to write browser profile report: {}", e.getMessage());
+    }
+    logProfiles();
+  }
+
+  private static Map<String, Object> toMegabytes(LongSummaryStatistics kilobytes) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("mean", kilobytes.getCount() == 0 ? 0 : (long) kilobytes.getAverage() / 1024);
+    summary.put("max", kilobytes.getCount() == 0 ? 0 : kilobytes.getMax() / 1024);
+    return summary;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void logProfiles() {
+    try (DirectoryStream<Path> reports = Files.newDirectoryStream(DIRECTORY, "*.json")) {
+      for (Path report : reports) {
+        Map<String, Object> summary =
+            JSON.toType(new String(Files.readAllBytes(report), UTF_8), Json.MAP_TYPE);
+        Map<String, Object> start = (Map<String, Object>) summary.get("cold_start");
+        Map<String, Object> atQuit = (Map<String, Object>) summary.get("chrome_rss_at_quit_mb");
+        log.info(
+            "Browser profile {}: {} session(s), cold start p50 {} ms, p95 {} ms, "
+                + "Chrome RSS at quit mean {} MB, max {} MB, {} chromedriver(s) {} MB",
+            summary.get("profile"),
+            summary.get("sessions"),
+            start.get("p50_ms"),
+            start.get("p95_ms"),
+            atQuit.get("mean"),
+            atQuit.get("max"),
+            summary.get("chromedriver_processes"),
+            summary.get("chromedriver_rss_mb"));
+      }
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to read browser profile reports: {}", e.getMessage());
+    }
+  }
+
+  /** Resident memory of the Chrome processes of one session and of its chromedriver server. */
+  private static final class Sample {
+
+    private static final Sample EMPTY = new Sample(0, 0, 0);
+
+    private final long chromeKb;
+    private final int chromedriverPid;
+    private final long chromedriverKb;
+
+    private Sample(long chromeKb, int chromedriverPid, long chromedriverKb) {
+      this.chromeKb = chromeKb;
+      this.chromedriverPid = chromedriverPid;
+      this.chromedriverKb = chromedriverKb;
+    }
+
+    private static Sample of(WebDriver driver) {
+      int[] processes = processesOf(driver);
+      if (processes == null) {
+        return EMPTY;
+      }
+      long chromeKb = ProcessMemory.residentKb(processes[0]);
+      for (int pid : ProcessMemory.descendantsOf(processes[0])) {
+        chromeKb += ProcessMemory.residentKb(pid);
+      }
+      return new Sample(chromeKb, processes[1], ProcessMemory.residentKb(processes[1]));
+    }
+
+    /**
+     * Returns the ids of the browser process and of the chromedriver process of the session, null
+     * if they are not found, e.g. for a session of a remote server.
+     */
+    private static int[] processesOf(WebDriver driver) {
+      int[] processes = PROCESSES.get(driver);
+      if (processes != null && ProcessMemory.isAlive(processes[0])) {
+        return processes;
+      }
+      String userDataDir = userDataDirOf(driver);
+      if (userDataDir == null || !ProcessMemory.isSupported()) {
+        return null;
+      }
+      String argument = "--user-data-dir=" + userDataDir;
+      for (int chromedriver : ProcessMemory.childrenOf(ProcessMemory.self())) {
+        // The topmost process with the argument is the browser process, its helpers may repeat it
+        for (int pid : ProcessMemory.descendantsOf(chromedriver)) {
+          if (ProcessMemory.arguments(pid).contains(argument)) {
+            processes = new int[] {pid, chromedriver};
+            PROCESSES.put(driver, processes);
+            return processes;
+          }
+        }
+      }
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String userDataDirOf(WebDriver driver) {
+      if (!(driver instanceof HasCapabilities)) {
+        return null;
+      }
+      Object chrome = ((HasCapabilities) driver).getCapabilities().getCapability("chrome");
+      return chrome instanceof Map
+          ? (String) ((Map<String, Object>) chrome).get("userDataDir")
+          : null;
+    }
+
+    private void addTo(LongSummaryStatistics chromeStatistics) {
+      if (chromeKb == 0) {
+        return;
+      }
+      chromeStatistics.accept(chromeKb);
+      if (chromedriverPid > 0) {
+        chromedrivers.merge(chromedriverPid, chromedriverKb, Math::max);
+      }
+    }
+  }
+
+  private LaunchReport() {}
+}
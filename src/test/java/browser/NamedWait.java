@@ -0,0 +1,100 @@
+package browser;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.Function;
+import metrics.LatencyRecorder;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.Sleeper;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link WebDriverWait} that polls by a {@link WaitPolicy} backoff instead of the fixed interval,
+ * records its latency to the {@link WaitHistory} and the {@link LatencyRecorder} and reports the
+ * attempts, elapsed time and timeout of every {@link #until} call.
+ */
+public final class NamedWait extends WebDriverWait {
+
+  private static final Logger log = LoggerFactory.getLogger(NamedWait.class);
+
+  private final String name;
+  private final String operation;
+  private final long timeoutInSeconds;
+  private final BackoffSleeper sleeper;
+
+  private NamedWait(WebDriver driver, String name, long timeoutInSeconds, BackoffSleeper sleeper) {
+    super(driver, Clock.systemDefaultZone(), sleeper, timeoutInSeconds, 0);
+    this.name = name;
+    this.operation = "wait:" + name;
+    this.timeoutInSeconds = timeoutInSeconds;
+    this.sleeper = sleeper;
+  }
+
+  static NamedWait create(
+      WebDriver driver, String name, long maxTimeoutInSeconds, WaitPolicy policy) {
+    long timeout = WaitHistory.timeoutInSeconds(name, maxTimeoutInSeconds);
+    return new NamedWait(driver, name, timeout, new BackoffSleeper(policy, timeout));
+  }
+
+  @Override
+  public <V> V until(Function<? super WebDriver, V> isTrue) {
+    long startNanos = System.nanoTime();
+    long start = System.currentTimeMillis();
+    sleeper.start(start);
+    int[] attempts = {0};
+    String outcome = "failed";
+    try {
+      V value =
+          super.until(
+              driver -> {
+                attempts[0]++;
+                return isTrue.apply(driver);
+              });
+      outcome = "succeeded";
+      return value;
+    } catch (TimeoutException e) {
+      outcome = "timed out";
+      throw e;
+    } finally {
+      long elapsed = System.currentTimeMillis() - start;
+      WaitHistory.record(name, elapsed);
+      LatencyRecorder.record(operation, startNanos);
+      log.info(
+          "Wait '{}' {} after {} attempt(s) in {} ms, timeout {} s",
+          name,
+          outcome,
+          attempts[0],
+          elapsed,
+          timeoutInSeconds);
+    }
+  }
+
+  /** Sleeps by the backoff policy, never past the deadline of the wait. */
+  private static final class BackoffSleeper implements Sleeper {
+
+    private final WaitPolicy policy;
+    private final long timeoutInMillis;
+    private long deadline;
+    private int failedAttempts;
+
+    private BackoffSleeper(WaitPolicy policy, long timeoutInSeconds) {
+      this.policy = policy;
+      this.timeoutInMillis = timeoutInSeconds * 1000;
+    }
+
+    private void start(long startInMillis) {
+      deadline = startInMillis + timeoutInMillis;
+      failedAttempts = 0;
+    }
+
+    @Override
+    public void sleep(Duration ignored) throws InterruptedException {
+      long delay = policy.delay(++failedAttempts).toMillis();
+      long remaining = deadline - System.currentTimeMillis();
+      Thread.sleep(Math.max(1, Math.min(delay, remaining)));
+    }
+  }
+}
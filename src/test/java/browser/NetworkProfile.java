@@ -0,0 +1,137 @@
+package browser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Network conditions of a browser session applied with DevTools network throttling and URL
+ * blocking. Every session starts with the profile selected by the {@code network_profile} flag,
+ * {@code unrestricted} by default, a step may switch the profile of its session. A pooled session
+ * gets its network back unrestricted when it is reset. Throughputs are in bytes per second.
+ */
+public enum NetworkProfile {
+
+  /** No throttling and no blocking. */
+  UNRESTRICTED(0, -1, -1),
+
+  /** No throttling, images, fonts, media and analytics beacons are blocked. */
+  FAST(
+      0,
+      -1,
+      -1,
+      "*.png",
+      "*.jpg",
+      "*.jpeg",
+      "*.gif",
+      "*.webp",
+      "*.ico",
+      "*.woff",
+      "*.woff2",
+      "*.ttf",
+      "*.mp3",
+      "*.mp4",
+      "*.webm",
+      "*google-analytics.com*",
+      "*googletagmanager.com*",
+      "*doubleclick.net*",
+      "*/beacon/*",
+      "*/clog/track*"),
+
+  /** Same as the "Fast 3G" preset of Chrome DevTools. */
+  FAST_3G(563, 180_000, 84_375),
+
+  /** Same as the "Slow 3G" preset of Chrome DevTools. */
+  SLOW_3G(2_000, 50_000, 50_000),
+
+  /** No network at all. */
+  OFFLINE(0, 0, 0);
+
+  private static final Logger log = LoggerFactory.getLogger(NetworkProfile.class);
+  private static final NetworkProfile DEFAULT =
+      named(System.getProperty("network_profile", "unrestricted"));
+  private static final ThreadLocal<NetworkProfile> CURRENT =
+      ThreadLocal.withInitial(() -> UNRESTRICTED);
+  // Sessions with any profile but the unrestricted one applied
+  private static final Set<WebDriver> SHAPED = ConcurrentHashMap.newKeySet();
+
+  private final long latencyInMillis;
+  private final long downloadThroughput;
+  private final long uploadThroughput;
+  private final List<String> blockedUrls;
+
+  NetworkProfile(
+      long latencyInMillis, long downloadThroughput, long uploadThroughput, String... blockedUrls) {
+    this.latencyInMillis = latencyInMillis;
+    this.downloadThroughput = downloadThroughput;
+    this.uploadThroughput = uploadThroughput;
+    this.blockedUrls = Collections.unmodifiableList(Arrays.asList(blockedUrls));
+  }
+
+  /** Returns the profile by its name, e.g. {@code fast} or {@code slow-3g}. */
+  public static NetworkProfile named(String name) {
+    return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+  }
+
+  /** Returns the profile of the browser session of the current thread. */
+  public static NetworkProfile current() {
+    return CURRENT.get();
+  }
+
+  /** Applies the default profile to the browser session just started by the current thread. */
+  static void startSession() {
+    CURRENT.remove();
+    if (DEFAULT != UNRESTRICTED) {
+      DEFAULT.apply();
+    }
+  }
+
+  /** Makes the network of the session unrestricted again if a profile has been applied to it. */
+  static void reset(WebDriver driver) {
+    if (SHAPED.remove(driver)) {
+      UNRESTRICTED.apply(driver);
+    }
+  }
+
+  /** Forgets the session when it quits. */
+  static void quit(WebDriver driver) {
+    SHAPED.remove(driver);
+  }
+
+  /** Applies the profile to the browser session of the current thread. */
+  public void apply() {
+    apply(Browser.driver());
+    CURRENT.set(this);
+    log.info("Network profile {} applied", getName());
+  }
+
+  private void apply(WebDriver driver) {
+    Map<String, Object> conditions = new HashMap<>();
+    conditions.put("offline", this == OFFLINE);
+    conditions.put("latency", latencyInMillis);
+    conditions.put("downloadThroughput", downloadThroughput);
+    conditions.put("uploadThroughput", uploadThroughput);
+    DevTools.send(driver, "Network.enable", Collections.emptyMap());
+    DevTools.send(driver, "Network.emulateNetworkConditions", conditions);
+    DevTools.send(
+        driver, "Network.setBlockedURLs", Collections.singletonMap("urls", blockedUrls));
+    if (this == UNRESTRICTED) {
+      SHAPED.remove(driver);
+    } else {
+      SHAPED.add(driver);
+    }
+  }
+
+  /** Returns the name of the profile as used by the flag and the steps. */
+  public String getName() {
+    return name().toLowerCase(Locale.ROOT).replace('_', '-');
+  }
+}
@@ -0,0 +1,196 @@
+package browser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client side performance of the steps of the scenario run by the current thread. The duration of
+ * every step is always kept for the budget steps, along with the {@link NetworkProfile} the step
+ * ran with. With {@code perf_capture} flag the browser metrics are captured around every step as
+ * well: the Navigation Timing and paint entries of a document loaded during the step, the Long
+ * Tasks of the step and the change of the Chrome DevTools performance metrics (layouts, style
+ * recalculations, script and task durations) with the JS heap size at the end of the step. The
+ * DevTools metrics are skipped for browsers without the DevTools endpoint.
+ */
+public final class PerformanceCapture {
+
+  private static final Logger log = LoggerFactory.getLogger(PerformanceCapture.class);
+  private static final boolean ENABLED = Boolean.getBoolean("perf_capture");
+  private static final ThreadLocal<PerformanceCapture> CURRENT = new ThreadLocal<>();
+  private static final Map<String, String> METRICS = new LinkedHashMap<>();
+  // Observes the Long Tasks of the document from its start and reports the navigation and paint
+  // entries once per document
+  private static final String COLLECT_JS =
+      "var capture = window.__perfCapture;"
+          + "if (!capture) {"
+          + "  capture = window.__perfCapture = {longTasks: [], reported: false};"
+          + "  try {"
+          + "    capture.observer = new PerformanceObserver(function (list) {"
+          + "      list.getEntries().forEach(function (e) { capture.longTasks.push(e.duration); });"
+          + "    });"
+          + "    capture.observer.observe({type: 'longtask', buffered: true});"
+          + "  } catch (e) {}"
+          + "}"
+          + "if (capture.observer) {"
+          + "  capture.observer.takeRecords().forEach(function (e) {"
+          + "    capture.longTasks.push(e.duration);"
+          + "  });"
+          + "}"
+          + "var result = {longTasks: capture.longTasks.splice(0)};"
+          + "if (!capture.reported && document.readyState === 'complete') {"
+          + "  capture.reported = true;"
+          + "  var navigation = performance.getEntriesByType('navigation')[0];"
+          + "  if (navigation) {"
+          + "    result.navigation = {"
+          + "      url: navigation.name,"
+          + "      ttfb: navigation.responseStart,"
+          + "      responseEnd: navigation.responseEnd,"
+          + "      domContentLoaded: navigation.domContentLoadedEventEnd,"
+          + "      load: navigation.loadEventEnd"
+          + "    };"
+          + "  }"
+          + "  result.paint = {};"
+          + "  performance.getEntriesByType('paint').forEach(function (e) {"
+          + "    result.paint[e.name] = e.startTime;"
+          + "  });"
+          + "}"
+          + "return result;";
+
+  static {
+    // DevTools metric and the name of its change during the step, the durations are in seconds
+    METRICS.put("LayoutCount", "layouts");
+    METRICS.put("RecalcStyleCount", "style_recalcs");
+    METRICS.put("ScriptDuration", "script_ms");
+    METRICS.put("TaskDuration", "task_ms");
+    METRICS.put("LayoutDuration", "layout_ms");
+    METRICS.put("RecalcStyleDuration", "style_recalc_ms");
+  }
+
+  private final List<Map<String, Object>> steps = new ArrayList<>();
+  private WebDriver devToolsDriver;
+  private boolean devToolsAvailable = true;
+  private Map<String, Double> metricsAtStart = Collections.emptyMap();
+  private boolean budgetStep;
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /** Starts the capture of the scenario run by the current thread. */
+  public static void start() {
+    CURRENT.set(new PerformanceCapture());
+  }
+
+  /** Returns the capture of the scenario run by the current thread, or null if not started. */
+  public static PerformanceCapture current() {
+    return CURRENT.get();
+  }
+
+  public static void stop() {
+    CURRENT.remove();
+  }
+
+  /** Takes the browser metrics at the start of a step. */
+  public void stepStarted() {
+    budgetStep = false;
+    if (ENABLED && Browser.isStarted()) {
+      metricsAtStart = devToolsMetrics();
+    }
+  }
+
+  /** Records the step with its duration and the browser metrics of the step. */
+  @SuppressWarnings("unchecked")
+  public void stepFinished(String name, long durationNanos) {
+    Map<String, Object> step = new LinkedHashMap<>();
+    step.put("step", name);
+    step.put("duration_ms", durationNanos / 1_000_000);
+    step.put("network", NetworkProfile.current().getName());
+    if (budgetStep) {
+      step.put("budget_step", true);
+    }
+    if (ENABLED && Browser.isStarted()) {
+      Object collected = Browser.execute(COLLECT_JS);
+      if (collected instanceof Map) {
+        Map<String, Object> entries = (Map<String, Object>) collected;
+        List<Number> longTasks = (List<Number>) entries.get("longTasks");
+        step.put("long_tasks", longTasks.size());
+        double longTaskMillis = longTasks.stream().mapToDouble(Number::doubleValue).sum();
+        step.put("long_task_ms", Math.round(longTaskMillis));
+        if (entries.containsKey("navigation")) {
+          step.put("navigation", entries.get("navigation"));
+        }
+        if (entries.containsKey("paint")) {
+          step.put("paint_ms", entries.get("paint"));
+        }
+      }
+      Map<String, Double> metrics = devToolsMetrics();
+      if (!metrics.isEmpty()) {
+        step.put("metrics", metricsOfStep(metricsAtStart, metrics));
+      }
+    }
+    steps.add(step);
+  }
+
+  /**
+   * Marks the running step as a budget step, which checks the steps run before it. The mark is
+   * recorded with the step as {@code budget_step}.
+   */
+  public void markBudgetStep() {
+    budgetStep = true;
+  }
+
+  /** Returns whether the finished step has been marked by {@link #markBudgetStep()}. */
+  public static boolean isBudgetStep(Map<String, Object> step) {
+    return Boolean.TRUE.equals(step.get("budget_step"));
+  }
+
+  /** Returns the finished steps in the order they ran. */
+  public List<Map<String, Object>> getSteps() {
+    return Collections.unmodifiableList(steps);
+  }
+
+  /** Returns the current DevTools performance metrics, empty if they are not available. */
+  @SuppressWarnings("unchecked")
+  private Map<String, Double> devToolsMetrics() {
+    if (!devToolsAvailable) {
+      return Collections.emptyMap();
+    }
+    try {
+      if (devToolsDriver != Browser.driver()) {
+        DevTools.send("Performance.enable");
+        devToolsDriver = Browser.driver();
+      }
+      Map<String, Double> metrics = new LinkedHashMap<>();
+      for (Map<String, Object> metric :
+          (List<Map<String, Object>>) DevTools.send("Performance.getMetrics").get("metrics")) {
+        metrics.put((String) metric.get("name"), ((Number) metric.get("value")).doubleValue());
+      }
+      return metrics;
+    } catch (RuntimeException e) {
+      devToolsAvailable = false;
+      log.debug("DevTools performance metrics are not available: {}", e.getMessage());
+      return Collections.emptyMap();
+    }
+  }
+
+  private static Map<String, Object> metricsOfStep(
+      Map<String, Double> start, Map<String, Double> end) {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("js_heap_used_bytes", Math.round(end.getOrDefault("JSHeapUsedSize", 0.0)));
+    METRICS.forEach(
+        (metric, name) -> {
+          double value = end.getOrDefault(metric, 0.0);
+          double before = start.getOrDefault(metric, 0.0);
+          // The metrics start over in the renderer of a new document
+          double change = value >= before ? value - before : value;
+          metrics.put(name, Math.round(name.endsWith("_ms") ? change * 1000 : change));
+        });
+    return metrics;
+  }
+}
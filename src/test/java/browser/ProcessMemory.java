@@ -0,0 +1,92 @@
+package browser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the resident memory of processes from {@code /proc}. On systems without {@code /proc}
+ * nothing is found and the memory is reported as 0.
+ */
+final class ProcessMemory {
+
+  private static final Path PROC = Paths.get("/proc");
+
+  static boolean isSupported() {
+    return Files.isDirectory(PROC.resolve("self"));
+  }
+
+  /** Returns the id of the current process, 0 if unknown. */
+  static int self() {
+    try {
+      return Integer.parseInt(PROC.resolve("self").toRealPath().getFileName().toString());
+    } catch (IOException | NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  static boolean isAlive(int pid) {
+    return Files.isDirectory(PROC.resolve(String.valueOf(pid)));
+  }
+
+  /** Returns the ids of the child processes, read from the children lists of the threads. */
+  static List<Integer> childrenOf(int pid) {
+    List<Integer> children = new ArrayList<>();
+    try (DirectoryStream<Path> threads = Files.newDirectoryStream(PROC.resolve(pid + "/task"))) {
+      for (Path thread : threads) {
+        for (String child : read(thread.resolve("children")).trim().split("\\s+")) {
+          if (!child.isEmpty()) {
+            children.add(Integer.parseInt(child));
+          }
+        }
+      }
+    } catch (IOException e) {
+      // The process has exited in the meantime
+    }
+    return children;
+  }
+
+  /** Returns the ids of the descendants of the process, parents before their children. */
+  static List<Integer> descendantsOf(int pid) {
+    List<Integer> descendants = new ArrayList<>(childrenOf(pid));
+    for (int i = 0; i < descendants.size(); i++) {
+      descendants.addAll(childrenOf(descendants.get(i)));
+    }
+    return descendants;
+  }
+
+  static List<String> arguments(int pid) {
+    return Arrays.asList(read(PROC.resolve(pid + "/cmdline")).split("\0"));
+  }
+
+  static long residentKb(int pid) {
+    return statusValue(pid, "VmRSS:");
+  }
+
+  private static long statusValue(int pid, String field) {
+    for (String line : read(PROC.resolve(pid + "/status")).split("\n")) {
+      if (line.startsWith(field)) {
+        return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+      }
+    }
+    return 0;
+  }
+
+  private static String read(Path path) {
+    try {
+      return new String(Files.readAllBytes(path), UTF_8);
+    } catch (IOException e) {
+      // The process has exited in the meantime
+      return "";
+    }
+  }
+
+  private ProcessMemory() {}
+}
@@ -0,0 +1,249 @@
+package browser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of warm browser sessions. Every worker thread owns up to {@code browser_pool_size}
+ * sessions: the one it currently uses and pre-warmed spares started in background. A released
+ * session is reset (extra windows, cookies, cache, and the storage, IndexedDB and service workers
+ * of every origin it visited) and kept for the next scenario of the same worker instead of being
+ * quit. A worker without idle sessions adopts the ones left by finished worker threads, so a later
+ * stage of the run starts warm. Sessions that fail a health check or a reset are evicted.
+ */
+final class SessionPool {
+
+  private static final Logger log = LoggerFactory.getLogger(SessionPool.class);
+  private static final int SIZE = Integer.getInteger("browser_pool_size", 0);
+
+  private static final String CURRENT_ORIGIN_JS = "return window.location.origin;";
+  // Session storage belongs to the window, the DevTools storage clearing leaves it alone
+  private static final String CLEAR_SESSION_STORAGE_JS =
+      "try { window.sessionStorage.clear(); } catch (e) {}";
+
+  private static final Set<Worker> WORKERS = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private static final ThreadLocal<Worker> WORKER =
+      ThreadLocal.withInitial(
+          () -> {
+            Worker worker = new Worker(Thread.currentThread());
+            WORKERS.add(worker);
+            return worker;
+          });
+  private static final Set<WebDriver> ALL = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private static final ExecutorService WARMER =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread thread = new Thread(r, "browser-pool-warmer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private static final AtomicLong created = new AtomicLong();
+  private static final AtomicLong reused = new AtomicLong();
+  private static final AtomicLong evicted = new AtomicLong();
+
+  static boolean isEnabled() {
+    return SIZE > 0;
+  }
+
+  /** Returns a healthy idle session of the current worker, or launches a new one. */
+  static WebDriver acquire() {
+    Worker worker = WORKER.get();
+    Deque<WebDriver> idle = worker.idle;
+    if (idle.isEmpty()) {
+      adoptFinishedWorkers(worker);
+    }
+    WebDriver driver;
+    while ((driver = idle.pollFirst()) != null) {
+      if (isHealthy(driver)) {
+        reused.incrementAndGet();
+        log.info("Reusing pooled browser session");
+        warmUp();
+        return driver;
+      }
+      evict(driver);
+    }
+    worker.owned.incrementAndGet();
+    driver = launch();
+    warmUp();
+    return driver;
+  }
+
+  /** Resets the session and returns it to the pool of the current worker. */
+  static void release(WebDriver driver) {
+    Deque<WebDriver> idle = WORKER.get().idle;
+    if (idle.size() >= SIZE || !reset(driver)) {
+      evict(driver);
+      return;
+    }
+    idle.addFirst(driver);
+  }
+
+  /** Quits every pooled session and logs the reuse statistics. */
+  static void shutdown() {
+    List<WebDriver> drivers = new ArrayList<>(ALL);
+    for (WebDriver driver : drivers) {
+      quit(driver);
+    }
+    WARMER.shutdownNow();
+    log.info(
+        "Browser pool: {} sessions created, {} reused, {} evicted",
+        created.get(),
+        reused.get(),
+        evicted.get());
+  }
+
+  /**
+   * Starts spare sessions of the current worker in background until the worker owns {@code
+   * browser_pool_size} sessions.
+   */
+  private static void warmUp() {
+    Deque<WebDriver> idle = WORKER.get().idle;
+    AtomicInteger owned = WORKER.get().owned;
+    while (owned.get() < SIZE) {
+      owned.incrementAndGet();
+      WARMER.execute(
+          () -> {
+            try {
+              idle.addLast(launch());
+            } catch (Exception e) {
+              owned.decrementAndGet();
+              log.warn("Failed to pre-warm a browser session: {}", e.getMessage());
+            }
+          });
+    }
+  }
+
+  /** Takes over the idle sessions of the worker threads that have terminated. */
+  private static void adoptFinishedWorkers(Worker worker) {
+    for (Worker finished : WORKERS) {
+      if (finished.thread.isAlive()) {
+        continue;
+      }
+      WebDriver driver;
+      while (worker.owned.get() < SIZE && (driver = finished.idle.pollFirst()) != null) {
+        finished.owned.decrementAndGet();
+        worker.owned.incrementAndGet();
+        worker.idle.addLast(driver);
+        log.info("Adopted idle browser session of finished worker {}", finished.thread.getName());
+      }
+    }
+  }
+
+  private static WebDriver launch() {
+    WebDriver driver = Browser.launch();
+    ALL.add(driver);
+    created.incrementAndGet();
+    return driver;
+  }
+
+  private static boolean isHealthy(WebDriver driver) {
+    try {
+      return !driver.getWindowHandles().isEmpty();
+    } catch (Exception e) {
+      log.warn("Pooled browser session failed health check: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  private static boolean reset(WebDriver driver) {
+    try {
+      List<String> handles = new ArrayList<>(driver.getWindowHandles());
+      for (String handle : handles.subList(1, handles.size())) {
+        driver.switchTo().window(handle).close();
+      }
+      driver.switchTo().window(handles.get(0));
+      ((JavascriptExecutor) driver).executeScript(CLEAR_SESSION_STORAGE_JS);
+      clearOrigins(driver);
+      NetworkProfile.reset(driver);
+      driver.get("about:blank");
+      return true;
+    } catch (Exception e) {
+      log.warn("Failed to reset pooled browser session: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Clears the cache and the data of every origin the session visited: those it navigated to, the
+   * current one and those it holds cookies of, which covers the origins reached by redirects.
+   */
+  @SuppressWarnings("unchecked")
+  private static void clearOrigins(WebDriver driver) {
+    Set<String> origins = new LinkedHashSet<>();
+    CommandExecutor executor = ((RemoteWebDriver) driver).getCommandExecutor();
+    if (executor instanceof TimedCommandExecutor) {
+      origins.addAll(((TimedCommandExecutor) executor).takeOrigins());
+    }
+    Object current = ((JavascriptExecutor) driver).executeScript(CURRENT_ORIGIN_JS);
+    if (current instanceof String && ((String) current).startsWith("http")) {
+      origins.add((String) current);
+    }
+    Object cookies =
+        DevTools.send(driver, "Network.getAllCookies", Collections.emptyMap()).get("cookies");
+    if (cookies instanceof List) {
+      for (Map<String, Object> cookie : (List<Map<String, Object>>) cookies) {
+        String domain = String.valueOf(cookie.get("domain"));
+        domain = domain.startsWith(".") ? domain.substring(1) : domain;
+        origins.add("https://" + domain);
+        origins.add("http://" + domain);
+      }
+    }
+    DevTools.send(driver, "Network.clearBrowserCache", Collections.emptyMap());
+    for (String origin : origins) {
+      Map<String, Object> params = new HashMap<>();
+      params.put("origin", origin);
+      params.put("storageTypes", "all");
+      DevTools.send(driver, "Storage.clearDataForOrigin", params);
+    }
+    DevTools.send(driver, "Network.clearBrowserCookies", Collections.emptyMap());
+  }
+
+  private static void evict(WebDriver driver) {
+    WORKER.get().owned.decrementAndGet();
+    evicted.incrementAndGet();
+    quit(driver);
+  }
+
+  private static void quit(WebDriver driver) {
+    ALL.remove(driver);
+    NetworkProfile.quit(driver);
+    try {
+      driver.quit();
+    } catch (Exception e) {
+      log.warn("Failed to quit browser session: {}", e.getMessage());
+    }
+  }
+
+  /** Sessions owned by one worker thread: the idle ones and the count including the used one. */
+  private static final class Worker {
+
+    private final Thread thread;
+    private final Deque<WebDriver> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger owned = new AtomicInteger();
+
+    private Worker(Thread thread) {
+      this.thread = thread;
+    }
+  }
+
+  private SessionPool() {}
+}
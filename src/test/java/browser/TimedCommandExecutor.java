@@ -0,0 +1,69 @@
+package browser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import metrics.LatencyRecorder;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * Records the latency of every WebDriver command sent to the driver server, and the origins the
+ * session navigates to.
+ */
+final class TimedCommandExecutor implements CommandExecutor {
+
+  private final HttpCommandExecutor delegate;
+  private final Set<String> origins = ConcurrentHashMap.newKeySet();
+
+  TimedCommandExecutor(HttpCommandExecutor delegate) {
+    this.delegate = delegate;
+  }
+
+  /** Returns the URL of the driver server the commands are sent to. */
+  URL getAddressOfRemoteServer() {
+    return delegate.getAddressOfRemoteServer();
+  }
+
+  /** Returns the http(s) origins navigated to since the previous call and forgets them. */
+  List<String> takeOrigins() {
+    List<String> taken = new ArrayList<>(origins);
+    origins.removeAll(taken);
+    return taken;
+  }
+
+  @Override
+  public Response execute(Command command) throws IOException {
+    if (DriverCommand.GET.equals(command.getName())) {
+      recordOrigin(String.valueOf(command.getParameters().get("url")));
+    }
+    long start = System.nanoTime();
+    try {
+      return delegate.execute(command);
+    } finally {
+      LatencyRecorder.record(command.getName(), start);
+    }
+  }
+
+  private void recordOrigin(String url) {
+    try {
+      URI uri = URI.create(url);
+      if ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) {
+        origins.add(
+            uri.getScheme()
+                + "://"
+                + uri.getHost()
+                + (uri.getPort() == -1 ? "" : ":" + uri.getPort()));
+      }
+    } catch (IllegalArgumentException e) {
+      // Not a URL the session can have stored data for
+    }
+  }
+}
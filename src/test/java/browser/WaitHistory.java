@@ -0,0 +1,162 @@
+package browser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency history of the named waits, persisted between runs in {@code wait_history_file}
+ * ({@code wait-history.properties} in the working directory by default). Once a wait has {@code
+ * wait_history_min_samples} samples its timeout is derived from the 99th percentile of the recorded
+ * latencies multiplied by {@code wait_timeout_factor}, instead of the fixed default timeout. The
+ * samples are kept per target, the Slack stub or the host of {@code workspace_url}, so the waits
+ * against a real workspace do not get the timeouts of the stub. The file is saved under a file
+ * lock, adding the samples of the run to those saved meanwhile by the other processes.
+ */
+final class WaitHistory {
+
+  private static final Logger log = LoggerFactory.getLogger(WaitHistory.class);
+  private static final Path FILE =
+      Paths.get(System.getProperty("wait_history_file", "wait-history.properties"));
+  private static final Path LOCK = Paths.get(FILE + ".lock");
+  private static final int MIN_SAMPLES = Integer.getInteger("wait_history_min_samples", 20);
+  private static final double TIMEOUT_FACTOR =
+      Double.parseDouble(System.getProperty("wait_timeout_factor", "3"));
+  private static final long MIN_TIMEOUT_IN_SECONDS = 5;
+  private static final int MAX_SAMPLES = 200;
+
+  // Loaded on the first wait, once the stub has set the workspace URL
+  private static final String TARGET = target();
+  private static final Map<String, Deque<Long>> SAMPLES = samplesOf(read(), TARGET);
+  // The samples of this run, added to the file on save
+  private static final Map<String, List<Long>> RECORDED = new TreeMap<>();
+
+  /** Returns the timeout of the named wait, never longer than the given maximum. */
+  static synchronized long timeoutInSeconds(String name, long maxTimeoutInSeconds) {
+    Deque<Long> samples = SAMPLES.get(name);
+    if (samples == null || samples.size() < MIN_SAMPLES) {
+      return maxTimeoutInSeconds;
+    }
+    List<Long> sorted = new ArrayList<>(samples);
+    Collections.sort(sorted);
+    long p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+    long timeout = (long) Math.ceil(p99 / 1000.0 * TIMEOUT_FACTOR);
+    return Math.min(Math.max(MIN_TIMEOUT_IN_SECONDS, timeout), maxTimeoutInSeconds);
+  }
+
+  /** Records the latency of a finished wait, timed out waits are recorded with their timeout. */
+  static synchronized void record(String name, long elapsedInMillis) {
+    add(SAMPLES.computeIfAbsent(name, n -> new ArrayDeque<>()), elapsedInMillis);
+    RECORDED.computeIfAbsent(name, n -> new ArrayList<>()).add(elapsedInMillis);
+  }
+
+  private static void add(Deque<Long> samples, long elapsedInMillis) {
+    samples.addLast(elapsedInMillis);
+    while (samples.size() > MAX_SAMPLES) {
+      samples.removeFirst();
+    }
+  }
+
+  /**
+   * Adds the samples of the run to the file so the next runs can use it. The file is read again
+   * under the lock, so the samples saved by other processes since the load are kept, and replaced
+   * atomically.
+   */
+  static synchronized void save() {
+    if (RECORDED.isEmpty()) {
+      return;
+    }
+    try (FileChannel lock =
+            FileChannel.open(LOCK, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock ignored = lock.lock()) {
+      Properties properties = read();
+      Map<String, Deque<Long>> samples = samplesOf(properties, TARGET);
+      RECORDED.forEach(
+          (name, recorded) -> {
+            Deque<Long> merged = samples.computeIfAbsent(name, n -> new ArrayDeque<>());
+            recorded.forEach(elapsed -> add(merged, elapsed));
+            properties.setProperty(
+                TARGET + "/" + name,
+                merged.stream().map(String::valueOf).collect(Collectors.joining(",")));
+          });
+      RECORDED.clear();
+      Path directory = FILE.toAbsolutePath().getParent();
+      Path temporary = Files.createTempFile(directory, FILE.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temporary, UTF_8)) {
+        properties.store(writer, "Latencies of named waits in milliseconds by target/wait");
+      }
+      Files.move(
+          temporary, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Failed to save wait history to {}: {}", FILE, e.getMessage());
+    }
+  }
+
+  /** Returns the target of the waits: the Slack stub or the host of the workspace. */
+  private static String target() {
+    if (Boolean.getBoolean("slack_stub")) {
+      return "slack-stub";
+    }
+    try {
+      String host = new URI(System.getProperty("workspace_url", "")).getHost();
+      return host == null ? "default" : host;
+    } catch (URISyntaxException e) {
+      return "default";
+    }
+  }
+
+  private static Properties read() {
+    Properties properties = new Properties();
+    if (Files.exists(FILE)) {
+      try (Reader reader = Files.newBufferedReader(FILE, UTF_8)) {
+        properties.load(reader);
+      } catch (IOException e) {
+        log.warn("Failed to load wait history from {}: {}", FILE, e.getMessage());
+      }
+    }
+    return properties;
+  }
+
+  /** Returns the samples of the waits of the target by the wait name. */
+  private static Map<String, Deque<Long>> samplesOf(Properties properties, String target) {
+    Map<String, Deque<Long>> samples = new TreeMap<>();
+    String prefix = target + "/";
+    for (String key : properties.stringPropertyNames()) {
+      if (!key.startsWith(prefix)) {
+        continue;
+      }
+      Deque<Long> values = new ArrayDeque<>();
+      for (String value : properties.getProperty(key).split(",")) {
+        if (!value.isEmpty()) {
+          values.add(Long.parseLong(value.trim()));
+        }
+      }
+      samples.put(key.substring(prefix.length()), values);
+    }
+    return samples;
+  }
+
+  private WaitHistory() {}
+}
@@ -0,0 +1,38 @@
+package browser;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polling schedule of a wait: exponential backoff from the initial delay up to the maximum delay,
+ * every delay is randomized by the jitter fraction so parallel workers do not poll in lockstep.
+ */
+public final class WaitPolicy {
+
+  /** Policy for waits on the page DOM: starts fast and backs off to 2 seconds. */
+  public static final WaitPolicy DEFAULT =
+      new WaitPolicy(Duration.ofMillis(100), Duration.ofSeconds(2), 2.0, 0.2);
+
+  private final Duration initialDelay;
+  private final Duration maxDelay;
+  private final double multiplier;
+  private final double jitter;
+
+  public WaitPolicy(Duration initialDelay, Duration maxDelay, double multiplier, double jitter) {
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+  }
+
+  /** Returns the delay before the attempt following the given number of failed attempts. */
+  Duration delay(int failedAttempts) {
+    double delay =
+        Math.min(
+            initialDelay.toMillis() * Math.pow(multiplier, Math.max(0, failedAttempts - 1)),
+            maxDelay.toMillis());
+    double spread = delay * jitter;
+    double jittered = delay - spread + ThreadLocalRandom.current().nextDouble() * 2 * spread;
+    return Duration.ofMillis(Math.max(1, Math.round(jittered)));
+  }
+}
@@ -0,0 +1,85 @@
+package metrics;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cucumber plugin that tags the latencies recorded by {@link LatencyRecorder} with the running
+ * scenario and step, records the step durations and writes the merged histograms as JSON to the
+ * plugin argument file at the end of the run. Step events are received on the thread running the
+ * scenario, that is why the plugin is a concurrent listener.
+ */
+public final class LatencyPlugin implements ConcurrentEventListener {
+
+  private static final Logger log = LoggerFactory.getLogger(LatencyPlugin.class);
+
+  private final File output;
+
+  public LatencyPlugin(File output) {
+    this.output = output;
+  }
+
+  @Override
+  public void setEventPublisher(EventPublisher publisher) {
+    publisher.registerHandlerFor(TestStepStarted.class, this::handleStepStarted);
+    publisher.registerHandlerFor(TestStepFinished.class, this::handleStepFinished);
+    publisher.registerHandlerFor(TestRunFinished.class, event -> write());
+  }
+
+  private void handleStepStarted(TestStepStarted event) {
+    LatencyRecorder.startStep(scenarioOf(event.getTestCase()), stepOf(event.getTestStep()));
+  }
+
+  private void handleStepFinished(TestStepFinished event) {
+    LatencyRecorder.recordDuration("step", event.getResult().getDuration().toNanos());
+    LatencyRecorder.finishStep();
+  }
+
+  private void write() {
+    try {
+      Files.createDirectories(output.getAbsoluteFile().getParentFile().toPath());
+      try (Writer writer = Files.newBufferedWriter(output.toPath(), UTF_8)) {
+        writer.write(new Json().toJson(LatencyRecorder.summary()));
+      }
+      log.info("Latency histograms written to {}", output);
+    } catch (IOException e) {
+      log.warn("Failed to write latency histograms to {}: {}", output, e.getMessage());
+    }
+  }
+
+  static String scenarioOf(TestCase testCase) {
+    return testCase.getName()
+        + " ("
+        + testCase.getUri()
+        + ":"
+        + testCase.getLocation().getLine()
+        + ")";
+  }
+
+  static String stepOf(TestStep testStep) {
+    if (testStep instanceof PickleStepTestStep) {
+      PickleStepTestStep step = (PickleStepTestStep) testStep;
+      return step.getStep().getKeyword() + step.getStep().getText();
+    }
+    if (testStep instanceof HookTestStep) {
+      return "Hook " + ((HookTestStep) testStep).getHookType();
+    }
+    return testStep.getCodeLocation();
+  }
+}
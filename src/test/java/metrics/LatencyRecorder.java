@@ -0,0 +1,119 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records latencies of browser operations (WebDriver commands, waits, scripts) into per-thread
+ * histograms tagged by the scenario and step running on the thread. Histograms of all threads are
+ * merged once at the end of the run. Recording takes an uncontended lock and allocates only the
+ * first time an operation is seen in a step.
+ */
+public final class LatencyRecorder {
+
+  private static final String NO_STEP = "(outside of steps)";
+  private static final ConcurrentLinkedQueue<ThreadState> THREADS = new ConcurrentLinkedQueue<>();
+  private static final ThreadLocal<ThreadState> STATE =
+      ThreadLocal.withInitial(
+          () -> {
+            ThreadState state = new ThreadState();
+            THREADS.add(state);
+            return state;
+          });
+
+  /** Tags the next recorded latencies of the current thread with the scenario and step. */
+  public static void startStep(String scenario, String step) {
+    STATE.get().start(scenario, step);
+  }
+
+  /** Stops tagging the latencies of the current thread with the step. */
+  public static void finishStep() {
+    STATE.get().start(NO_STEP, NO_STEP);
+  }
+
+  /** Records the latency of the operation started at the given {@link System#nanoTime()}. */
+  public static void record(String operation, long startNanos) {
+    recordDuration(operation, System.nanoTime() - startNanos);
+  }
+
+  /** Records the latency of the operation that took the given nanoseconds. */
+  public static void recordDuration(String operation, long durationNanos) {
+    STATE.get().record(operation, durationNanos / 1000);
+  }
+
+  /**
+   * Merges the histograms of all threads into a summary per scenario step and a summary of the
+   * whole run, ready to be written as JSON.
+   */
+  public static Map<String, Object> summary() {
+    Map<String, Map<String, Histogram>> byStep = new TreeMap<>();
+    for (ThreadState state : THREADS) {
+      state.mergeInto(byStep);
+    }
+    Map<String, Histogram> total = new TreeMap<>();
+    List<Map<String, Object>> steps = new ArrayList<>();
+    byStep.forEach(
+        (step, operations) -> {
+          Map<String, Object> stepSummary = new LinkedHashMap<>();
+          int separator = step.indexOf('\n');
+          stepSummary.put("scenario", step.substring(0, separator));
+          stepSummary.put("step", step.substring(separator + 1));
+          stepSummary.put("operations", toMaps(operations));
+          steps.add(stepSummary);
+          operations.forEach(
+              (operation, histogram) ->
+                  total.computeIfAbsent(operation, o -> new Histogram()).merge(histogram));
+        });
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("total", toMaps(total));
+    summary.put("steps", steps);
+    return summary;
+  }
+
+  private static Map<String, Object> toMaps(Map<String, Histogram> histograms) {
+    Map<String, Object> maps = new TreeMap<>();
+    histograms.forEach((operation, histogram) -> maps.put(operation, histogram.toMap()));
+    return maps;
+  }
+
+  private static final class ThreadState {
+
+    private final Map<String, Map<String, Histogram>> byStep = new HashMap<>();
+    private Map<String, Histogram> current;
+
+    private ThreadState() {
+      start(NO_STEP, NO_STEP);
+    }
+
+    private synchronized void start(String scenario, String step) {
+      current = byStep.computeIfAbsent(scenario + '\n' + step, s -> new HashMap<>());
+    }
+
+    private synchronized void record(String operation, long micros) {
+      Histogram histogram = current.get(operation);
+      if (histogram == null) {
+        histogram = new Histogram();
+        current.put(operation, histogram);
+      }
+      histogram.record(micros);
+    }
+
+    private synchronized void mergeInto(Map<String, Map<String, Histogram>> merged) {
+      byStep.forEach(
+          (step, operations) ->
+              operations.forEach(
+                  (operation, histogram) ->
+                      merged
+                          .computeIfAbsent(step, s -> new TreeMap<>())
+                          .computeIfAbsent(operation, o -> new Histogram())
+                          .merge(histogram)));
+    }
+  }
+
+  private LatencyRecorder() {}
+}
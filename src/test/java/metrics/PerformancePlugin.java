@@ -0,0 +1,37 @@
+package metrics;
+
+import browser.PerformanceCapture;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+
+/**
+ * Cucumber plugin capturing the client side performance around every step of a scenario with
+ * {@link PerformanceCapture}, hooks are not captured. Step events are received on the thread
+ * running the scenario, so the capture works with the browser of the scenario.
+ */
+public final class PerformancePlugin implements ConcurrentEventListener {
+
+  @Override
+  public void setEventPublisher(EventPublisher publisher) {
+    publisher.registerHandlerFor(TestStepStarted.class, this::handleStepStarted);
+    publisher.registerHandlerFor(TestStepFinished.class, this::handleStepFinished);
+  }
+
+  private void handleStepStarted(TestStepStarted event) {
+    PerformanceCapture capture = PerformanceCapture.current();
+    if (capture != null && event.getTestStep() instanceof PickleStepTestStep) {
+      capture.stepStarted();
+    }
+  }
+
+  private void handleStepFinished(TestStepFinished event) {
+    PerformanceCapture capture = PerformanceCapture.current();
+    if (capture != null && event.getTestStep() instanceof PickleStepTestStep) {
+      capture.stepFinished(
+          LatencyPlugin.stepOf(event.getTestStep()), event.getResult().getDuration().toNanos());
+    }
+  }
+}
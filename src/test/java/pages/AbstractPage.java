@@ -1,13 +1,36 @@
 package pages;
 
 import browser.Browser;
+import browser.JsLocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.PageFactory;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 
 /** Base page class with common page methods. Final page classes are supposed to extend this one. */
 public abstract class AbstractPage {
 
+  private static final String READ_ALL_JS =
+      JsLocator.FIND_ALL_JS
+          + "var attributes = arguments[2];"
+          + "return findAll(arguments[0], arguments[1]).map(function (el) {"
+          + "  var values = {};"
+          + "  attributes.forEach(function (name) { values[name] = el.getAttribute(name); });"
+          + "  var displayed = isVisible(el);"
+          + "  return {"
+          + "    text: displayed ? (el.innerText || '').trim() : '',"
+          + "    displayed: displayed,"
+          + "    attributes: values"
+          + "  };"
+          + "});";
+
   /** Page constructor that waits for page is loaded and initializes its web elements. */
   protected AbstractPage() {
     waitUntilReadyStateToBeComplete();
@@ -24,14 +47,70 @@ public abstract class AbstractPage {
         () ->
             String.format(
                 "Page got stuck in loading state at %s", Browser.driver().getCurrentUrl());
-    Browser.waiting()
+    Browser.waiting("page_ready")
         .withMessage(msg)
         .until((ExpectedCondition<Boolean>) c -> "complete".equals(Browser.execute(js)));
   }
 
+  /**
+   * Reads the text, visibility and the given attributes of all elements matching the locator. The
+   * values are extracted by one script call instead of several WebDriver commands per element.
+   */
+  @SuppressWarnings("unchecked")
+  protected List<ElementSnapshot> readAll(By locator, String... attributes) {
+    JsLocator jsLocator = JsLocator.of(locator);
+    Object result =
+        jsLocator == null
+            ? null
+            : Browser.execute(
+                READ_ALL_JS,
+                jsLocator.getKind(),
+                jsLocator.getSelector(),
+                Arrays.asList(attributes));
+    if (result == null) {
+      // The locator is not supported by the script or the script failed, read element by element
+      return Browser.driver().findElements(locator).stream()
+          .map(element -> snapshot(element, attributes))
+          .collect(Collectors.toList());
+    }
+    List<ElementSnapshot> snapshots = new ArrayList<>();
+    for (Map<String, Object> values : (List<Map<String, Object>>) result) {
+      snapshots.add(
+          new ElementSnapshot(
+              (String) values.get("text"),
+              Boolean.TRUE.equals(values.get("displayed")),
+              (Map<String, String>) values.get("attributes")));
+    }
+    return snapshots;
+  }
+
+  private static ElementSnapshot snapshot(WebElement element, String... attributes) {
+    Map<String, String> values = new HashMap<>();
+    for (String attribute : attributes) {
+      values.put(attribute, element.getAttribute(attribute));
+    }
+    // Trimmed like the text read by the script
+    return new ElementSnapshot(element.getText().trim(), element.isDisplayed(), values);
+  }
+
+  /**
+   * Returns the element held by a cached lookup that lives as long as the page, or null if none is
+   * held yet. {@link PageProvider} returns the cached page object only while that element is still
+   * attached.
+   */
+  protected WebElement getCachedRoot() {
+    return null;
+  }
+
+  /** Returns the element the cached lookup of the page field holds, null if it holds none. */
+  static WebElement cachedElementOf(WebElement field) {
+    return field instanceof LocatedElement ? ((LocatedElement) field).getCachedElement() : null;
+  }
+
   /**
    * Initializes the page web elements with {@link PageFactory} as required by the Page Object
-   * pattern.
+   * pattern. Pages override it to bind their elements with the {@code <Page>Elements} class
+   * generated at compile time instead of the reflective proxies.
    */
   protected void initElements() {
     PageFactory.initElements(Browser.driver(), this);
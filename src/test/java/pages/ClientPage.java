@@ -2,16 +2,20 @@ package pages;
 
 import static org.openqa.selenium.support.ui.ExpectedConditions.elementToBeClickable;
 import static org.openqa.selenium.support.ui.ExpectedConditions.visibilityOf;
-import static org.openqa.selenium.support.ui.ExpectedConditions.visibilityOfElementLocated;
 
 import browser.Browser;
+import browser.WaitPolicy;
 import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Keys;
+import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.CacheLookup;
 import org.openqa.selenium.support.FindBy;
+import pagegen.LocatorPattern;
 
 /**
  * Represents the Slack client web page with the corresponding web elements and the page
@@ -19,54 +23,122 @@ import org.openqa.selenium.support.FindBy;
  */
 public final class ClientPage extends AbstractPage {
 
+  // Document-wide lookup of a rendered sidebar item, kept for the locator benchmarks
+  @LocatorPattern
   private static final String CHANNEL_XPATH_PATTERN =
       "//*[contains(@data-qa, 'virtual-list-item')][.='%s']";
+
+  @LocatorPattern
   private static final String MESSAGE_CONTAINER_XPATH_PATTERN =
       ".//*[@data-qa='message_container'][contains(., '%s')]";
+
+  @LocatorPattern
   private static final String MESSAGE_CONTAINER_IN_SEARCH_RESULTS_XPATH_PATTERN =
       "//*[@class='c-focus_manage_list__item'][.//*[.='%s']]";
 
-  @FindBy(css = "[data-qa=virtual-list-item][aria-selected=true]")
-  private WebElement selectedChannel;
-
-  @FindBy(css = "[data-qa=team-menu-trigger]")
-  private WebElement workspaceTrigger;
+  // Search index update takes from seconds to minutes, no need to re-submit the search often
+  private static final WaitPolicy SEARCH_INDEX_WAIT_POLICY =
+      new WaitPolicy(Duration.ofSeconds(2), Duration.ofSeconds(15), 1.5, 0.2);
+  private static final String SAVED_MESSAGE_MARK = "Added to your saved items";
+  private static final String SIDEBAR_ITEM = "[data-qa*=virtual-list-item]";
+  private static final By SELECTED_CHANNEL =
+      By.cssSelector("[data-qa=virtual-list-item][aria-selected=true]");
+  private static final By WORKSPACE_TRIGGER = By.cssSelector("[data-qa=team-menu-trigger]");
+  private static final By SAVED_MESSAGES =
+      By.cssSelector("[aria-label=Saved] .p-rich_text_section");
+  // Inserts every message into the input the way a paste does and submits it by Enter
+  private static final String PASTE_MESSAGES_JS =
+      "var input = arguments[0];"
+          + "arguments[1].forEach(function (text) {"
+          + "  input.focus();"
+          + "  document.execCommand('selectAll', false, null);"
+          + "  document.execCommand('insertText', false, text);"
+          + "  input.dispatchEvent(new KeyboardEvent('keydown', {"
+          + "    key: 'Enter', code: 'Enter', keyCode: 13, which: 13,"
+          + "    bubbles: true, cancelable: true"
+          + "  }));"
+          + "});";
+  // Posts the messages one after another, so they are stored in the order of the list
+  private static final String POST_MESSAGES_JS =
+      "var channel = arguments[0], messages = arguments[1];"
+          + "var done = arguments[arguments.length - 1];"
+          + "messages.reduce(function (posted, text) {"
+          + "  return posted.then(function () {"
+          + "    return fetch('/api/chat.postMessage', {"
+          + "      method: 'POST', credentials: 'same-origin',"
+          + "      headers: {'Content-Type': 'application/json'},"
+          + "      body: JSON.stringify({channel: channel, text: text})"
+          + "    });"
+          + "  }).then(function (response) {"
+          + "    if (!response.ok) throw new Error('chat.postMessage ' + response.status);"
+          + "  });"
+          + "}, Promise.resolve())"
+          + ".then(function () { done(messages.length); }, function (e) { done(String(e)); });";
 
+  @CacheLookup
   @FindBy(css = "[aria-label^=Message]")
-  private WebElement messageInput;
+  WebElement messageInput;
 
   @FindBy(css = "button[data-qa=save_message][aria-label=Save]")
-  private WebElement saveMessageButton;
+  WebElement saveMessageButton;
 
   @FindBy(css = "button[data-qa=save_message][aria-label='Remove from saved items']")
-  private WebElement removeFromSavedItemsButton;
+  WebElement removeFromSavedItemsButton;
 
+  @CacheLookup
   @FindBy(css = "[data-qa=top_nav_search]")
-  private WebElement topSearchButton;
+  WebElement topSearchButton;
 
   @FindBy(css = "[data-qa=focusable_search_input] .ql-editor")
-  private WebElement topSearchInput;
+  WebElement topSearchInput;
 
   @FindBy(css = "[data-qa=search_input_close]")
-  private WebElement closeTopSearchButton;
+  WebElement closeTopSearchButton;
 
   @FindBy(css = "[data-qa=saved_flexpane]")
-  private WebElement savedItemsPane;
+  WebElement savedItemsPane;
+
+  @FindBy(css = "[data-qa=slack_kit_list]")
+  WebElement sidebarList;
+
+  @Override
+  protected void initElements() {
+    ClientPageElements.bind(this, Browser.driver());
+  }
 
-  @FindBy(css = "[aria-label=Saved] .p-rich_text_section")
-  private List<WebElement> savedMessages;
+  @Override
+  protected WebElement getCachedRoot() {
+    return cachedElementOf(messageInput);
+  }
 
+  /**
+   * Clicks the sidebar item, scrolling the virtualised sidebar to it with {@link
+   * VirtualListNavigator} as it may not be rendered.
+   */
   public void selectSidebarItem(String itemName) {
-    By xpath = By.xpath(String.format(CHANNEL_XPATH_PATTERN, itemName));
-    Browser.waiting().until(elementToBeClickable(xpath)).click();
+    VirtualListNavigator navigator = VirtualListNavigator.current();
+    WebElement item =
+        Browser.waiting("sidebar_item")
+            .withMessage("Sidebar item is not found: " + itemName)
+            .until(condition -> navigator.find(sidebarList, SIDEBAR_ITEM, itemName));
+    Browser.waiting("sidebar_item").until(elementToBeClickable(item)).click();
   }
 
   public String getSelectedWorkspace() {
-    return Browser.waiting().until(elementToBeClickable(workspaceTrigger)).getText().trim();
+    return Browser.waiting("workspace_trigger")
+        .until(condition -> getDisplayedText(WORKSPACE_TRIGGER).orElse(null));
   }
 
   public String getSelectedChannel() {
-    return selectedChannel.getText().trim();
+    return getDisplayedText(SELECTED_CHANNEL)
+        .orElseThrow(() -> new NoSuchElementException("Selected channel is not displayed"));
+  }
+
+  private Optional<String> getDisplayedText(By locator) {
+    return readAll(locator).stream()
+        .filter(ElementSnapshot::isDisplayed)
+        .map(ElementSnapshot::getText)
+        .findFirst();
   }
 
   public void sendMessage(String message) {
@@ -77,33 +149,70 @@ public final class ClientPage extends AbstractPage {
     waitForMessageIsDisplayed(message);
   }
 
+  /**
+   * Sends the messages to the current channel by pasting them into the message input, without
+   * keystrokes, and waits for the last one is displayed. The client posts the messages one after
+   * another, so the others have been delivered by then. The chat may be virtualised, so the batch
+   * is not expected to be rendered at once.
+   */
+  public void pasteMessages(List<String> messages) {
+    messageInput.click();
+    Browser.execute(PASTE_MESSAGES_JS, messageInput, messages);
+    waitForMessageIsDisplayed(messages.get(messages.size() - 1));
+  }
+
+  /**
+   * Posts the messages to the current channel through the {@code chat.postMessage} endpoint of the
+   * workspace web API with the session of the browser. The chat is not updated, see {@link
+   * #reloadMessages}.
+   */
+  public void postMessages(List<String> messages) {
+    Object posted = Browser.executeAsync(POST_MESSAGES_JS, getCurrentChannelId(), messages);
+    if (!(posted instanceof Number)) {
+      throw new IllegalStateException("Failed to post messages: " + posted);
+    }
+  }
+
+  /** Reloads the client page and waits for the message is displayed in the chat. */
+  public void reloadMessages(String lastMessage) {
+    Browser.driver().navigate().refresh();
+    waitForMessageIsDisplayed(lastMessage);
+  }
+
+  /** Returns the id of the current channel, the last segment of the client page URL. */
+  public String getCurrentChannelId() {
+    String url = Browser.driver().getCurrentUrl();
+    return url.substring(url.lastIndexOf('/') + 1).split("[?#]")[0];
+  }
+
   public void saveMessage(String message) {
     WebElement messageContainer = waitForMessageIsDisplayed(message);
 
     // Hover over the message container
     Browser.actions().moveToElement(messageContainer).build().perform();
-    Browser.waiting().until(elementToBeClickable(saveMessageButton)).click();
+    Browser.waiting("save_message_button").until(elementToBeClickable(saveMessageButton)).click();
 
     // Make sure the message has been saved
-    Browser.waiting()
+    Browser.observing()
         .withMessage("Message has not been saved: " + message)
-        .until(
-            condition ->
-                waitForMessageIsDisplayed(message).getText().contains("Added to your saved items"));
+        .untilTextContains(messageXpath(message), SAVED_MESSAGE_MARK);
   }
 
   private WebElement waitForMessageIsDisplayed(String message) {
-    By messageXpath = By.xpath(String.format(MESSAGE_CONTAINER_XPATH_PATTERN, message));
     // Waiting for the message is displayed in the chat window
-    return Browser.waiting()
+    return Browser.observing()
         .withMessage("Message is not displayed: " + message)
-        .until(visibilityOfElementLocated(messageXpath));
+        .untilVisible(messageXpath(message));
+  }
+
+  private By messageXpath(String message) {
+    return ClientPageElements.messageContainerXpath(message);
   }
 
   public void searchFor(String searchText) {
     topSearchButton.click();
     // Waiting for the search input is intractable
-    Browser.waiting().until(elementToBeClickable(topSearchInput));
+    Browser.waiting("search_input").until(elementToBeClickable(topSearchInput));
     topSearchInput.click();
     topSearchInput.clear();
     // Appending Enter key at the end to submit the search query right away
@@ -111,19 +220,22 @@ public final class ClientPage extends AbstractPage {
   }
 
   public void waitForMessageInSearchResults(String message) {
-    By messageContainerXpath =
-        By.xpath(String.format(MESSAGE_CONTAINER_IN_SEARCH_RESULTS_XPATH_PATTERN, message));
-    // Waiting for the message is displayed in the search results with the timeout of 2 min
-    Browser.waiting(120L)
+    By messageContainerXpath = ClientPageElements.messageContainerInSearchResultsXpath(message);
+    // Waiting for the message is displayed in the search results with the timeout up to 2 min
+    boolean[] submitted = {true};
+    Browser.waiting("search_results", 120L, SEARCH_INDEX_WAIT_POLICY)
         .withMessage("The message has not been found in search results: " + message)
-        .pollingEvery(Duration.ofSeconds(5)) // keep trying every 5 sec
         .until(
             condition -> {
               if (!Browser.driver().findElements(messageContainerXpath).isEmpty()) {
                 return true;
               }
-              // re-submit the search query to get the refresh the search results
-              topSearchInput.sendKeys(Keys.ENTER);
+              // The query has just been submitted by searchFor, re-submit it on the next checks
+              // only to refresh the search results
+              if (!submitted[0]) {
+                topSearchInput.sendKeys(Keys.ENTER);
+              }
+              submitted[0] = false;
               return false;
             });
   }
@@ -133,15 +245,15 @@ public final class ClientPage extends AbstractPage {
   }
 
   public void waitForSavedItemsPaneIsDisplayed() {
-    Browser.waiting().until(visibilityOf(savedItemsPane));
+    Browser.waiting("saved_items_pane").until(visibilityOf(savedItemsPane));
   }
 
   public List<String> getSavedMessages() {
     // Waiting for the Saved items list is rendered and not empty
-    Browser.waiting()
-        .withMessage("Saved items list is empty")
-        .until(condition -> !savedMessages.isEmpty());
-    return savedMessages.stream().map(WebElement::getText).collect(Collectors.toList());
+    Browser.observing().withMessage("Saved items list is empty").untilVisible(SAVED_MESSAGES);
+    return readAll(SAVED_MESSAGES).stream()
+        .map(ElementSnapshot::getText)
+        .collect(Collectors.toList());
   }
 
   public void removeMessageFromSavedItems(String message) {
@@ -149,15 +261,13 @@ public final class ClientPage extends AbstractPage {
 
     // Hover over the message container
     Browser.actions().moveToElement(messageContainer).build().perform();
-    Browser.waiting().until(elementToBeClickable(removeFromSavedItemsButton)).click();
+    Browser.waiting("remove_from_saved_items_button")
+        .until(elementToBeClickable(removeFromSavedItemsButton))
+        .click();
 
-    // Make sure the message has been removed
-    Browser.waiting()
+    // Make sure the message has been removed, from the very container it was removed from
+    Browser.observing()
         .withMessage("Message has not been removed from Saved items: " + message)
-        .until(
-            condition ->
-                !waitForMessageIsDisplayed(message)
-                    .getText()
-                    .contains("Added to your saved items"));
+        .untilTextNotContains(messageContainer, SAVED_MESSAGE_MARK);
   }
 }
@@ -0,0 +1,32 @@
+package pages;
+
+import java.util.Collections;
+import java.util.Map;
+
+/** Plain values of a web element read by {@link AbstractPage#readAll}. */
+public final class ElementSnapshot {
+
+  private final String text;
+  private final boolean displayed;
+  private final Map<String, String> attributes;
+
+  ElementSnapshot(String text, boolean displayed, Map<String, String> attributes) {
+    this.text = text;
+    this.displayed = displayed;
+    this.attributes = Collections.unmodifiableMap(attributes);
+  }
+
+  /** Returns the rendered text of the element, empty for hidden elements. */
+  public String getText() {
+    return text;
+  }
+
+  public boolean isDisplayed() {
+    return displayed;
+  }
+
+  /** Returns the attribute value, or null if the attribute has not been requested or is absent. */
+  public String getAttribute(String name) {
+    return attributes.get(name);
+  }
+}
@@ -0,0 +1,172 @@
+package pages;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Coordinates;
+import org.openqa.selenium.interactions.Locatable;
+
+/**
+ * Web element bound to a page field by the generated {@code <Page>Elements} classes. The element is
+ * located on every call, or once and then kept until it goes stale if the lookup is cached.
+ */
+final class LocatedElement implements WebElement, WrapsElement, Locatable {
+
+  private final SearchContext context;
+  private final By locator;
+  private final boolean cacheLookup;
+  private WebElement cached;
+
+  LocatedElement(SearchContext context, By locator, boolean cacheLookup) {
+    this.context = context;
+    this.locator = locator;
+    this.cacheLookup = cacheLookup;
+  }
+
+  @Override
+  public WebElement getWrappedElement() {
+    return locate();
+  }
+
+  /** Returns the element kept by the cached lookup, null if it has not been located yet. */
+  WebElement getCachedElement() {
+    return cached;
+  }
+
+  private WebElement locate() {
+    if (cached != null) {
+      return cached;
+    }
+    WebElement element = context.findElement(locator);
+    if (cacheLookup) {
+      cached = element;
+    }
+    return element;
+  }
+
+  /** Calls the element, locates it once again if the cached element went stale. */
+  private <T> T call(Function<WebElement, T> action) {
+    try {
+      return action.apply(locate());
+    } catch (StaleElementReferenceException e) {
+      if (cached == null) {
+        throw e;
+      }
+      cached = null;
+      return action.apply(locate());
+    }
+  }
+
+  private void run(Consumer<WebElement> action) {
+    call(
+        element -> {
+          action.accept(element);
+          return null;
+        });
+  }
+
+  @Override
+  public void click() {
+    run(WebElement::click);
+  }
+
+  @Override
+  public void submit() {
+    run(WebElement::submit);
+  }
+
+  @Override
+  public void sendKeys(CharSequence... keysToSend) {
+    run(element -> element.sendKeys(keysToSend));
+  }
+
+  @Override
+  public void clear() {
+    run(WebElement::clear);
+  }
+
+  @Override
+  public String getTagName() {
+    return call(WebElement::getTagName);
+  }
+
+  @Override
+  public String getAttribute(String name) {
+    return call(element -> element.getAttribute(name));
+  }
+
+  @Override
+  public boolean isSelected() {
+    return call(WebElement::isSelected);
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return call(WebElement::isEnabled);
+  }
+
+  @Override
+  public String getText() {
+    return call(WebElement::getText);
+  }
+
+  @Override
+  public List<WebElement> findElements(By by) {
+    return call(element -> element.findElements(by));
+  }
+
+  @Override
+  public WebElement findElement(By by) {
+    return call(element -> element.findElement(by));
+  }
+
+  @Override
+  public boolean isDisplayed() {
+    return call(WebElement::isDisplayed);
+  }
+
+  @Override
+  public Point getLocation() {
+    return call(WebElement::getLocation);
+  }
+
+  @Override
+  public Dimension getSize() {
+    return call(WebElement::getSize);
+  }
+
+  @Override
+  public Rectangle getRect() {
+    return call(WebElement::getRect);
+  }
+
+  @Override
+  public String getCssValue(String propertyName) {
+    return call(element -> element.getCssValue(propertyName));
+  }
+
+  @Override
+  public <X> X getScreenshotAs(OutputType<X> target) throws WebDriverException {
+    return call(element -> element.getScreenshotAs(target));
+  }
+
+  @Override
+  public Coordinates getCoordinates() {
+    return call(element -> ((Locatable) element).getCoordinates());
+  }
+
+  @Override
+  public String toString() {
+    return "Located element " + locator;
+  }
+}
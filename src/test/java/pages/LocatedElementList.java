@@ -0,0 +1,77 @@
+package pages;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * List of web elements bound to a page field by the generated {@code <Page>Elements} classes. The
+ * elements are located on every call, or once and then kept until one of them goes stale if the
+ * lookup is cached.
+ */
+final class LocatedElementList extends AbstractList<WebElement> {
+
+  private final SearchContext context;
+  private final By locator;
+  private final boolean cacheLookup;
+  private List<WebElement> cached;
+
+  LocatedElementList(SearchContext context, By locator, boolean cacheLookup) {
+    this.context = context;
+    this.locator = locator;
+    this.cacheLookup = cacheLookup;
+  }
+
+  private List<WebElement> locate() {
+    if (cached != null) {
+      if (!isStale(cached.get(0))) {
+        return cached;
+      }
+      cached = null;
+    }
+    List<WebElement> elements = context.findElements(locator);
+    if (cacheLookup && !elements.isEmpty()) {
+      cached = elements;
+    }
+    return elements;
+  }
+
+  private static boolean isStale(WebElement element) {
+    try {
+      element.isEnabled();
+      return false;
+    } catch (StaleElementReferenceException e) {
+      return true;
+    }
+  }
+
+  @Override
+  public WebElement get(int index) {
+    return locate().get(index);
+  }
+
+  @Override
+  public int size() {
+    return locate().size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return locate().isEmpty();
+  }
+
+  @Override
+  public Iterator<WebElement> iterator() {
+    return locate().iterator();
+  }
+
+  @Override
+  public Stream<WebElement> stream() {
+    return locate().stream();
+  }
+}
@@ -1,6 +1,8 @@
 package pages;
 
+import browser.Browser;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.CacheLookup;
 import org.openqa.selenium.support.FindBy;
 
 /**
@@ -8,17 +10,31 @@ import org.openqa.selenium.support.FindBy;
  */
 public class LoginPage extends AbstractPage {
 
+  @CacheLookup
   @FindBy(tagName = "h1")
-  private WebElement header;
+  WebElement header;
 
+  @CacheLookup
   @FindBy(id = "email")
-  private WebElement emailInput;
+  WebElement emailInput;
 
+  @CacheLookup
   @FindBy(id = "password")
-  private WebElement passwordInput;
+  WebElement passwordInput;
 
+  @CacheLookup
   @FindBy(id = "signin_btn")
-  private WebElement signInButton;
+  WebElement signInButton;
+
+  @Override
+  protected void initElements() {
+    LoginPageElements.bind(this, Browser.driver());
+  }
+
+  @Override
+  protected WebElement getCachedRoot() {
+    return cachedElementOf(header);
+  }
 
   public String getHeader() {
     return header.getText().trim();
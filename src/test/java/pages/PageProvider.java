@@ -1,20 +1,132 @@
 package pages;
 
 import browser.Browser;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.LatencyRecorder;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Determines which page is currently open in the browser and returns its corresponding page class.
+ * The page object is cached per browser and returned again while the URL and the document stay the
+ * same and its cached root element is still attached, so the page loading wait and the elements
+ * initialization are not repeated on every step. A page re-rendered in place gets a new page
+ * object with fresh elements.
  */
 public class PageProvider {
 
+  private static final Logger log = LoggerFactory.getLogger(PageProvider.class);
+  // Marks the document with a random id once, a new document after navigation gets a new id
+  // The cached root element of the cached page, if any, is passed to check it is still attached
+  private static final String PAGE_IDENTITY_JS =
+      "if (!window.__pageProviderId) {"
+          + "  window.__pageProviderId = Math.random().toString(36).slice(2);"
+          + "}"
+          + "var root = arguments[0];"
+          + "return [window.location.href, window.__pageProviderId, !root || root.isConnected];";
+  // The localhost URLs are served by the Slack stub, its client pages are under /client/
+  private static final String LOGIN_URL_PATTERN =
+      ".*/((slack-exercise-md.)?slack.com/|localhost:\\d+/(?!client/)).*";
+  private static final String CLIENT_URL_PATTERN = ".*/(app.slack.com|localhost:\\d+/client)/.*";
+  private static final ThreadLocal<CachedPage> CACHE = new ThreadLocal<>();
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+
   public static AbstractPage getCurrentPage() {
-    String currentUrl = Browser.driver().getCurrentUrl();
-    if (currentUrl.matches(".*/(slack-exercise-md.)?slack.com/.*")) {
+    WebDriver driver = Browser.driver();
+    CachedPage cached = CACHE.get();
+    WebElement root =
+        cached == null || cached.driver != driver ? null : cached.page.getCachedRoot();
+    Object identity = identify(root);
+    if (identity == null && root != null) {
+      // The root element went stale with the document it belonged to
+      cached = null;
+      identity = identify(null);
+    }
+    String currentUrl;
+    String documentId;
+    if (identity instanceof List) {
+      currentUrl = (String) ((List<?>) identity).get(0);
+      documentId = (String) ((List<?>) identity).get(1);
+      if (Boolean.FALSE.equals(((List<?>) identity).get(2))) {
+        cached = null;
+      }
+    } else {
+      currentUrl = driver.getCurrentUrl();
+      documentId = null;
+    }
+
+    if (cached != null && cached.matches(driver, currentUrl, documentId)) {
+      hits.incrementAndGet();
+      return cached.page;
+    }
+    misses.incrementAndGet();
+    AbstractPage page = createPage(currentUrl);
+    if (documentId == null) {
+      CACHE.remove();
+    } else {
+      CACHE.set(new CachedPage(driver, currentUrl, documentId, page));
+    }
+    return page;
+  }
+
+  /** Returns the URL, the document id and whether the root is attached, null if it is stale. */
+  private static Object identify(WebElement root) {
+    long start = System.nanoTime();
+    try {
+      return ((JavascriptExecutor) Browser.driver()).executeScript(PAGE_IDENTITY_JS, root);
+    } catch (StaleElementReferenceException e) {
+      return null;
+    } catch (WebDriverException e) {
+      log.warn("Failed to identify the current page: {}", e.getMessage());
+      return null;
+    } finally {
+      LatencyRecorder.record("Browser.execute", start);
+    }
+  }
+
+  /** Drops the cached page object of the current thread, e.g. when its elements became stale. */
+  public static void invalidate() {
+    CACHE.remove();
+  }
+
+  /** Logs the page cache hit and miss counts. */
+  public static void logStatistics() {
+    log.info("Page cache: {} hits, {} misses", hits.get(), misses.get());
+  }
+
+  private static AbstractPage createPage(String currentUrl) {
+    if (currentUrl.matches(LOGIN_URL_PATTERN)) {
       return new LoginPage();
     }
-    if (currentUrl.matches(".*/app.slack.com/.*")) {
+    if (currentUrl.matches(CLIENT_URL_PATTERN)) {
       return new ClientPage();
     }
     throw new IllegalStateException("Could not determine page with current URL " + currentUrl);
   }
+
+  private static final class CachedPage {
+
+    private final WebDriver driver;
+    private final String url;
+    private final String documentId;
+    private final AbstractPage page;
+
+    private CachedPage(WebDriver driver, String url, String documentId, AbstractPage page) {
+      this.driver = driver;
+      this.url = url;
+      this.documentId = documentId;
+      this.page = page;
+    }
+
+    private boolean matches(WebDriver driver, String url, String documentId) {
+      return this.driver == driver && this.url.equals(url) && this.documentId.equals(documentId);
+    }
+  }
 }
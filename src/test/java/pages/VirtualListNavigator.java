@@ -0,0 +1,126 @@
+package pages;
+
+import browser.Browser;
+import java.util.HashMap;
+import java.util.Map;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds items of a virtualised list, which renders only the items around its visible part. Every
+ * lookup is one script call scoped to the list element: it looks for the item among the rendered
+ * ones, then jumps to its scroll offset if the item has been seen before, then scrolls the list
+ * from the top in steps of most of its height until the item is rendered, at most {@code
+ * virtual_list_max_steps} steps (500 by default). The offsets of all items seen on the way are
+ * kept per browser, so a later lookup of any of them is a single jump.
+ */
+final class VirtualListNavigator {
+
+  private static final Logger log = LoggerFactory.getLogger(VirtualListNavigator.class);
+  private static final int MAX_STEPS = Integer.getInteger("virtual_list_max_steps", 500);
+  private static final ThreadLocal<VirtualListNavigator> NAVIGATORS = new ThreadLocal<>();
+  // Scrolling re-renders the list asynchronously, two animation frames let it settle. The
+  // animation frames are paused in a hidden window, so a timeout of about three frames does then
+  private static final String FIND_ITEM_JS =
+      "var list = arguments[0], itemSelector = arguments[1], name = arguments[2];"
+          + "var offset = arguments[3], maxSteps = arguments[4];"
+          + "var done = arguments[arguments.length - 1];"
+          + "var scroller = list;"
+          + "while (scroller && scroller.scrollHeight <= scroller.clientHeight) {"
+          + "  scroller = scroller.parentElement;"
+          + "}"
+          + "scroller = scroller || list;"
+          + "var offsets = {}, steps = 0;"
+          + "function find() {"
+          + "  var top = scroller.getBoundingClientRect().top - scroller.scrollTop, found = null;"
+          + "  list.querySelectorAll(itemSelector).forEach(function (item) {"
+          + "    var text = item.textContent.trim();"
+          + "    offsets[text] = Math.max(0, Math.round(item.getBoundingClientRect().top - top));"
+          + "    if (text === name) found = item;"
+          + "  });"
+          + "  return found;"
+          + "}"
+          + "function finish(item) {"
+          + "  if (item) item.scrollIntoView({block: 'nearest'});"
+          + "  done({item: item, offsets: offsets, steps: steps});"
+          + "}"
+          + "function scrollTo(scrollTop, next) {"
+          + "  scroller.scrollTop = scrollTop;"
+          + "  var settled = false;"
+          + "  function settle() {"
+          + "    if (!settled) {"
+          + "      settled = true;"
+          + "      next();"
+          + "    }"
+          + "  }"
+          + "  requestAnimationFrame(function () { requestAnimationFrame(settle); });"
+          + "  setTimeout(settle, 50);"
+          + "}"
+          + "function scan() {"
+          + "  var item = find(), bottom = scroller.scrollHeight - scroller.clientHeight;"
+          + "  if (item || scroller.scrollTop >= bottom || steps >= maxSteps) return finish(item);"
+          + "  steps++;"
+          + "  scrollTo(scroller.scrollTop + Math.max(1, scroller.clientHeight * 0.8), scan);"
+          + "}"
+          + "var rendered = find();"
+          + "if (rendered) {"
+          + "  finish(rendered);"
+          + "} else if (offset !== null) {"
+          + "  scrollTo(offset, function () {"
+          + "    var item = find();"
+          + "    item ? finish(item) : scrollTo(0, scan);"
+          + "  });"
+          + "} else {"
+          + "  scrollTo(0, scan);"
+          + "}";
+
+  private final WebDriver driver;
+  private final Map<String, Long> offsets = new HashMap<>();
+
+  private VirtualListNavigator(WebDriver driver) {
+    this.driver = driver;
+  }
+
+  /** Returns the navigator of the current browser, the offsets it knows outlive the pages. */
+  static VirtualListNavigator current() {
+    VirtualListNavigator navigator = NAVIGATORS.get();
+    if (navigator == null || navigator.driver != Browser.driver()) {
+      navigator = new VirtualListNavigator(Browser.driver());
+      NAVIGATORS.set(navigator);
+    }
+    return navigator;
+  }
+
+  /**
+   * Scrolls the item with the given text into view and returns it, or returns null if the list
+   * does not have it.
+   *
+   * @param list the element of the list, the items are looked for only inside it
+   * @param itemSelector CSS selector of the items relative to the list
+   */
+  @SuppressWarnings("unchecked")
+  WebElement find(WebElement list, String itemSelector, String name) {
+    Object result =
+        Browser.executeAsync(FIND_ITEM_JS, list, itemSelector, name, offsets.get(name), MAX_STEPS);
+    if (!(result instanceof Map)) {
+      return null;
+    }
+    Map<String, Object> found = (Map<String, Object>) result;
+    ((Map<String, Number>) found.get("offsets"))
+        .forEach((item, offset) -> offsets.put(item, offset.longValue()));
+    long steps = ((Number) found.get("steps")).longValue();
+    Object item = found.get("item");
+    if (item == null) {
+      // The offset is stale or the item is not there yet, the next lookup scans again
+      offsets.remove(name);
+      log.debug("'{}' not found in the list after {} scroll step(s)", name, steps);
+      return null;
+    }
+    if (steps > 0) {
+      log.debug("'{}' found after {} scroll step(s), {} indexed", name, steps, offsets.size());
+    }
+    return (WebElement) item;
+  }
+}
@@ -0,0 +1,245 @@
+package report;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates the HTML report from a Cucumber JSON report, reading one scenario at a time so the
+ * memory does not grow with the suite. The scenarios are rendered to a temporary body file while
+ * the totals are counted, then the summary and the body are written to the report. Attachments
+ * stored by {@link StreamingReportPlugin} are linked, images are shown lazily. Arguments: the JSON
+ * report and the HTML report, {@code target/cucumber-reports/json-reports/CucumberTestReport.json}
+ * and {@code target/cucumber-reports/html-report/index.html} by default.
+ */
+public final class HtmlReport {
+
+  private static final Logger log = LoggerFactory.getLogger(HtmlReport.class);
+  private static final Path DEFAULT_REPORT =
+      Paths.get("target", "cucumber-reports", "json-reports", "CucumberTestReport.json");
+  private static final Path DEFAULT_HTML =
+      Paths.get("target", "cucumber-reports", "html-report", "index.html");
+  private static final Json JSON = new Json();
+  private static final List<String> SEVERITY =
+      Arrays.asList("passed", "skipped", "pending", "undefined", "ambiguous", "failed");
+  private static final String STYLE =
+      "body{font-family:sans-serif;margin:2em}table{border-collapse:collapse}"
+          + "td,th{border:1px solid #ccc;padding:.3em .6em;text-align:left}"
+          + ".passed{color:#2e7d32}.failed{color:#c62828}.skipped,.pending,.undefined,"
+          + ".ambiguous{color:#ef6c00}summary{cursor:pointer}pre{background:#f5f5f5;"
+          + "padding:.5em;overflow:auto}img{max-width:480px;border:1px solid #ccc}";
+
+  private final Path reportsDirectory;
+  private final Path htmlDirectory;
+  private final Map<String, Integer> statuses = new TreeMap<>();
+  private int features;
+  private long durationNanos;
+
+  private HtmlReport(Path report, Path html) {
+    this.reportsDirectory = report.toAbsolutePath().getParent().getParent();
+    this.htmlDirectory = html.toAbsolutePath().getParent();
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path report = args.length > 0 ? Paths.get(args[0]) : DEFAULT_REPORT;
+    Path html = args.length > 1 ? Paths.get(args[1]) : DEFAULT_HTML;
+    new HtmlReport(report, html).generate(report, html);
+  }
+
+  private void generate(Path report, Path html) throws IOException {
+    if (!Files.exists(report)) {
+      // A sharded run writes its report to the shard directory until the reports are merged
+      log.warn("No Cucumber report at {}, the HTML report is not generated", report);
+      return;
+    }
+    Files.createDirectories(htmlDirectory);
+    Path body = Files.createTempFile(htmlDirectory, "body", ".html");
+    try {
+      try (Reader reader = Files.newBufferedReader(report, UTF_8);
+          JsonInput input = JSON.newInput(reader);
+          Writer writer = Files.newBufferedWriter(body, UTF_8)) {
+        input.beginArray();
+        while (input.hasNext()) {
+          readFeature(input, writer);
+        }
+        input.endArray();
+      }
+      try (Writer writer = Files.newBufferedWriter(html, UTF_8)) {
+        writer.write("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Cucumber report");
+        writer.write("</title><style>" + STYLE + "</style></head><body><h1>Cucumber report</h1>");
+        writeSummary(writer);
+        try (Reader reader = Files.newBufferedReader(body, UTF_8)) {
+          char[] buffer = new char[8192];
+          for (int read; (read = reader.read(buffer)) > 0; ) {
+            writer.write(buffer, 0, read);
+          }
+        }
+        writer.write("</body></html>\n");
+      }
+    } finally {
+      Files.delete(body);
+    }
+    log.info("HTML report of {} written to {}", statuses, html);
+  }
+
+  private void readFeature(JsonInput input, Writer writer) throws IOException {
+    String name = "Feature";
+    String uri = "";
+    input.beginObject();
+    while (input.hasNext()) {
+      switch (input.nextName()) {
+        case "name":
+          name = input.nextString();
+          break;
+        case "uri":
+          uri = input.nextString();
+          break;
+        case "elements":
+          features++;
+          writer.write("<h2>" + escape(name) + " <small>" + escape(uri) + "</small></h2>\n");
+          input.beginArray();
+          while (input.hasNext()) {
+            Map<String, Object> element = input.read(Json.MAP_TYPE);
+            if ("scenario".equals(element.get("type"))) {
+              writeScenario(element, writer);
+            }
+          }
+          input.endArray();
+          break;
+        default:
+          input.skipValue();
+      }
+    }
+    input.endObject();
+  }
+
+  private void writeScenario(Map<String, Object> scenario, Writer writer) throws IOException {
+    StringBuilder details = new StringBuilder();
+    String status = "passed";
+    long nanos = 0;
+    for (String list : new String[] {"before", "steps", "after"}) {
+      for (Map<String, Object> step : entries(scenario, list)) {
+        for (Map<String, Object> entry : flatten(step)) {
+          Map<String, Object> result = resultOf(entry);
+          String entryStatus = String.valueOf(result.getOrDefault("status", "skipped"));
+          status = worse(status, entryStatus);
+          nanos += ((Number) result.getOrDefault("duration", 0)).longValue();
+          writeEntry(entry, entryStatus, result, details);
+        }
+      }
+    }
+    statuses.merge(status, 1, Integer::sum);
+    durationNanos += nanos;
+    writer.write(
+        String.format(
+            "<details><summary><span class=\"%s\">%s</span> %s <small>line %s, %d ms</small>"
+                + "</summary><ul>%s</ul></details>\n",
+            status,
+            status,
+            escape(String.valueOf(scenario.get("name"))),
+            scenario.get("line"),
+            nanos / 1_000_000,
+            details));
+  }
+
+  /** Renders a step, or a hook if it failed or has anything attached. */
+  @SuppressWarnings("unchecked")
+  private void writeEntry(
+      Map<String, Object> entry, String status, Map<String, Object> result, StringBuilder html) {
+    boolean step = entry.containsKey("name");
+    List<Object> output = (List<Object>) entry.getOrDefault("output", Collections.emptyList());
+    List<Map<String, Object>> attachments = entries(entry, "attachments");
+    if (!step && "passed".equals(status) && output.isEmpty() && attachments.isEmpty()) {
+      return;
+    }
+    String name =
+        step
+            ? entry.get("keyword") + String.valueOf(entry.get("name"))
+            : "Hook " + ((Map<String, Object>) entry.get("match")).get("location");
+    html.append(String.format("<li><span class=\"%s\">%s</span> %s", status, status, escape(name)));
+    if (result.containsKey("error_message")) {
+      String error = String.valueOf(result.get("error_message"));
+      html.append("<pre>").append(escape(error)).append("</pre>");
+    }
+    for (Object line : output) {
+      html.append("<pre>").append(escape(String.valueOf(line))).append("</pre>");
+    }
+    for (Map<String, Object> attachment : attachments) {
+      String href = escape(linkTo(String.valueOf(attachment.get("path"))));
+      String label = escape(String.valueOf(attachment.get("name")));
+      if (String.valueOf(attachment.get("mime_type")).startsWith("image/")) {
+        html.append(
+            String.format(
+                "<div><a href=\"%s\"><img loading=\"lazy\" src=\"%s\" alt=\"%s\"></a></div>",
+                href, href, label));
+      } else {
+        html.append(String.format("<div><a href=\"%s\">%s</a></div>", href, label));
+      }
+    }
+    html.append("</li>");
+  }
+
+  private void writeSummary(Writer writer) throws IOException {
+    int scenarios = statuses.values().stream().mapToInt(Integer::intValue).sum();
+    writer.write("<table><tr><th>Features</th><th>Scenarios</th>");
+    for (String status : statuses.keySet()) {
+      writer.write("<th class=\"" + status + "\">" + status + "</th>");
+    }
+    writer.write("<th>Duration</th></tr><tr><td>" + features + "</td><td>" + scenarios + "</td>");
+    for (int count : statuses.values()) {
+      writer.write("<td>" + count + "</td>");
+    }
+    writer.write("<td>" + durationNanos / 1_000_000_000 + " s</td></tr></table>\n");
+  }
+
+  /** Returns the step with its nested step hooks, in the order they ran. */
+  private static List<Map<String, Object>> flatten(Map<String, Object> step) {
+    List<Map<String, Object>> entries = new ArrayList<>(entries(step, "before"));
+    entries.add(step);
+    entries.addAll(entries(step, "after"));
+    return entries;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Map<String, Object>> entries(Map<String, Object> map, String field) {
+    Object list = map.get(field);
+    return list instanceof List ? (List<Map<String, Object>>) list : Collections.emptyList();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> resultOf(Map<String, Object> entry) {
+    Object result = entry.get("result");
+    return result instanceof Map ? (Map<String, Object>) result : Collections.emptyMap();
+  }
+
+  private static String worse(String status, String other) {
+    return SEVERITY.indexOf(other) > SEVERITY.indexOf(status) ? other : status;
+  }
+
+  /** Returns the link to the attachment stored relative to the reports directory. */
+  private String linkTo(String path) {
+    return htmlDirectory.relativize(reportsDirectory.resolve(path)).toString().replace('\\', '/');
+  }
+
+  private static String escape(String text) {
+    return text.replace("&", "&amp;")
+        .replace("<", "&lt;")
+        .replace(">", "&gt;")
+        .replace("\"", "&quot;");
+  }
+}
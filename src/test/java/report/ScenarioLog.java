@@ -0,0 +1,147 @@
+package report;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.apache.log4j.Appender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.helpers.OnlyOnceErrorHandler;
+import org.apache.log4j.spi.ErrorHandler;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.slf4j.MDC;
+
+/**
+ * Log4j appender keeping the log of the scenario run by the current thread, to be attached to the
+ * scenario if it fails. Every worker writes to its own buffer, so unlike {@code
+ * AppenderSkeleton} the appender takes no lock. The buffer keeps the last {@code MaxEvents} events
+ * of the scenario (5000 by default). Between {@link #start} and {@link #finish} the log events of
+ * the thread carry the scenario and the current step as the {@code scenario} and {@code step} MDC
+ * values.
+ */
+public final class ScenarioLog implements Appender {
+
+  private static final ThreadLocal<Buffer> BUFFER = new ThreadLocal<>();
+
+  private String name;
+  private Layout layout;
+  private ErrorHandler errorHandler = new OnlyOnceErrorHandler();
+  private int maxEvents = 5000;
+
+  /** Starts the log of the scenario run by the current thread. */
+  public static void start(String scenario) {
+    MDC.put("scenario", scenario);
+    BUFFER.set(new Buffer());
+  }
+
+  public static void step(String step) {
+    MDC.put("step", step);
+  }
+
+  /** Returns the log of the scenario run by the current thread so far. */
+  public static String contents() {
+    Buffer buffer = BUFFER.get();
+    return buffer == null ? "" : buffer.toString();
+  }
+
+  /** Ends the log of the scenario run by the current thread. */
+  public static void finish() {
+    BUFFER.remove();
+    MDC.remove("scenario");
+    MDC.remove("step");
+  }
+
+  public void setMaxEvents(int maxEvents) {
+    this.maxEvents = maxEvents;
+  }
+
+  @Override
+  public void doAppend(LoggingEvent event) {
+    Buffer buffer = BUFFER.get();
+    if (buffer == null || layout == null) {
+      return;
+    }
+    buffer.add(layout.format(event), maxEvents);
+    if (layout.ignoresThrowable() && event.getThrowableStrRep() != null) {
+      for (String line : event.getThrowableStrRep()) {
+        buffer.add(line + Layout.LINE_SEP, maxEvents);
+      }
+    }
+  }
+
+  @Override
+  public void addFilter(Filter filter) {
+    // Every event of the scenario is kept
+  }
+
+  @Override
+  public Filter getFilter() {
+    return null;
+  }
+
+  @Override
+  public void clearFilters() {}
+
+  @Override
+  public void close() {}
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public ErrorHandler getErrorHandler() {
+    return errorHandler;
+  }
+
+  @Override
+  public void setErrorHandler(ErrorHandler errorHandler) {
+    this.errorHandler = errorHandler;
+  }
+
+  @Override
+  public Layout getLayout() {
+    return layout;
+  }
+
+  @Override
+  public void setLayout(Layout layout) {
+    this.layout = layout;
+  }
+
+  @Override
+  public boolean requiresLayout() {
+    return true;
+  }
+
+  /** Last events of a scenario and the number of the older ones dropped. */
+  private static final class Buffer {
+
+    private final Deque<String> lines = new ArrayDeque<>();
+    private int dropped;
+
+    private void add(String line, int maxEvents) {
+      lines.addLast(line);
+      while (lines.size() > maxEvents) {
+        lines.removeFirst();
+        dropped++;
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder log = new StringBuilder();
+      if (dropped > 0) {
+        log.append("... ").append(dropped).append(" earlier line(s) dropped");
+        log.append(Layout.LINE_SEP);
+      }
+      lines.forEach(log::append);
+      return log.toString();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package report;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepStarted;
+
+/**
+ * Cucumber plugin stamping the log events of a scenario with the running step, see {@link
+ * ScenarioLog}. Step events are received on the thread running the scenario.
+ */
+public final class ScenarioLogPlugin implements ConcurrentEventListener {
+
+  @Override
+  public void setEventPublisher(EventPublisher publisher) {
+    publisher.registerHandlerFor(
+        TestStepStarted.class, event -> ScenarioLog.step(nameOf(event.getTestStep())));
+  }
+
+  private static String nameOf(TestStep testStep) {
+    if (testStep instanceof PickleStepTestStep) {
+      PickleStepTestStep step = (PickleStepTestStep) testStep;
+      return step.getStep().getKeyword() + step.getStep().getText();
+    }
+    if (testStep instanceof HookTestStep) {
+      return "Hook " + ((HookTestStep) testStep).getHookType();
+    }
+    return testStep.getCodeLocation();
+  }
+}
@@ -0,0 +1,414 @@
+package report;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EmbedEvent;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.HookType;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Result;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestSourceRead;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import io.cucumber.plugin.event.WriteEvent;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cucumber plugin writing {@code json-reports/CucumberTestReport.json} to the plugin argument
+ * directory without keeping the run in memory. Every finished scenario is appended as one line to
+ * a spool file of its feature, the spool files are concatenated into the Cucumber JSON report at
+ * the end of the run. Attachments are not inlined: they are stored once under {@code
+ * attachments/<sha-256>.<extension>} and referenced by the {@code attachments} of the step or hook
+ * they were attached in, in place of the base64 {@code embeddings} of the Cucumber JSON
+ * formatter, so reports reading the embeddings show no attachments. Background steps are reported
+ * among the steps of the scenario. A scenario run more than once, e.g. rerun after failing, is
+ * reported once with its last result.
+ */
+public final class StreamingReportPlugin implements ConcurrentEventListener {
+
+  static final String REPORT = "json-reports/CucumberTestReport.json";
+  static final String ATTACHMENTS = "attachments";
+
+  private static final Logger log = LoggerFactory.getLogger(StreamingReportPlugin.class);
+  private static final Json JSON = new Json();
+  private static final URI WORKING_DIRECTORY = new File("").getAbsoluteFile().toURI();
+  private static final Pattern FEATURE = Pattern.compile("^\\s*(Feature|Ability|Business Need):");
+
+  private final Path directory;
+  private final Path spool;
+  private final Map<String, Feature> features = Collections.synchronizedMap(new LinkedHashMap<>());
+  private final Map<UUID, Element> running = new ConcurrentHashMap<>();
+  private final AtomicLong stored = new AtomicLong();
+  private final AtomicLong storedBytes = new AtomicLong();
+  private final AtomicLong duplicateBytes = new AtomicLong();
+
+  public StreamingReportPlugin(File directory) {
+    this.directory = directory.toPath();
+    this.spool = this.directory.resolve("json-reports").resolve("spool");
+  }
+
+  @Override
+  public void setEventPublisher(EventPublisher publisher) {
+    publisher.registerHandlerFor(TestSourceRead.class, this::handleSourceRead);
+    publisher.registerHandlerFor(TestCaseStarted.class, this::handleCaseStarted);
+    publisher.registerHandlerFor(TestStepStarted.class, this::handleStepStarted);
+    publisher.registerHandlerFor(TestStepFinished.class, this::handleStepFinished);
+    publisher.registerHandlerFor(EmbedEvent.class, this::handleEmbed);
+    publisher.registerHandlerFor(WriteEvent.class, this::handleWrite);
+    publisher.registerHandlerFor(TestCaseFinished.class, this::handleCaseFinished);
+    publisher.registerHandlerFor(TestRunFinished.class, event -> write());
+  }
+
+  private void handleSourceRead(TestSourceRead event) {
+    String uri = event.getUri().toString();
+    Path file = spool.resolve(features.size() + ".json");
+    // Relative to the working directory, as the Cucumber JSON formatter reports it
+    String reportedUri = "file:" + WORKING_DIRECTORY.relativize(event.getUri()).getPath();
+    try {
+      // Left over by an interrupted run
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    features.put(uri, new Feature(reportedUri, event.getSource(), file));
+  }
+
+  private void handleCaseStarted(TestCaseStarted event) {
+    running.put(event.getTestCase().getId(), new Element(event));
+  }
+
+  private void handleStepStarted(TestStepStarted event) {
+    Element element = running.get(event.getTestCase().getId());
+    Map<String, Object> entry = new LinkedHashMap<>();
+    if (event.getTestStep() instanceof PickleStepTestStep) {
+      PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+      entry.put("keyword", step.getStep().getKeyword());
+      entry.put("name", step.getStep().getText());
+      entry.put("line", step.getStep().getLine());
+    }
+    entry.put("match", Collections.singletonMap("location", event.getTestStep().getCodeLocation()));
+    element.start(event.getTestStep(), entry);
+  }
+
+  private void handleStepFinished(TestStepFinished event) {
+    running.get(event.getTestCase().getId()).finish(toMap(event.getResult()));
+  }
+
+  private void handleEmbed(EmbedEvent event) {
+    String path = store(event.getData(), event.getMediaType());
+    Map<String, Object> attachment = new LinkedHashMap<>();
+    attachment.put("name", event.getName());
+    attachment.put("mime_type", event.getMediaType());
+    attachment.put("path", path);
+    running.get(event.getTestCase().getId()).add("attachments", attachment);
+  }
+
+  private void handleWrite(WriteEvent event) {
+    running.get(event.getTestCase().getId()).add("output", event.getText());
+  }
+
+  private void handleCaseFinished(TestCaseFinished event) {
+    TestCase testCase = event.getTestCase();
+    Element element = running.remove(testCase.getId());
+    Feature feature = features.get(testCase.getUri().toString());
+    try {
+      feature.append(testCase.getLocation().getLine(), compact(element.toMap(feature.name)));
+    } catch (IOException e) {
+      log.warn("Failed to spool the report of '{}': {}", testCase.getName(), e.getMessage());
+    }
+  }
+
+  private static Map<String, Object> toMap(Result result) {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("status", result.getStatus().name().toLowerCase(Locale.ROOT));
+    map.put("duration", result.getDuration().toNanos());
+    if (result.getError() != null) {
+      StringWriter trace = new StringWriter();
+      result.getError().printStackTrace(new PrintWriter(trace));
+      map.put("error_message", trace.toString());
+    }
+    return map;
+  }
+
+  /** Stores the attachment once by its content, returns its path relative to the directory. */
+  private String store(byte[] data, String mediaType) {
+    String path = ATTACHMENTS + "/" + sha256(data) + "." + extensionOf(mediaType);
+    Path file = directory.resolve(path);
+    if (Files.exists(file)) {
+      duplicateBytes.addAndGet(data.length);
+      return path;
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      Path temporary = Files.createTempFile(file.getParent(), "attachment", ".tmp");
+      Files.write(temporary, data);
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      stored.incrementAndGet();
+      storedBytes.addAndGet(data.length);
+    } catch (IOException e) {
+      log.warn("Failed to store attachment {}: {}", path, e.getMessage());
+    }
+    return path;
+  }
+
+  private static String sha256(byte[] data) {
+    try {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String extensionOf(String mediaType) {
+    switch (mediaType) {
+      case "image/png":
+        return "png";
+      case "image/jpeg":
+        return "jpg";
+      case "image/webp":
+        return "webp";
+      case "text/html":
+        return "html";
+      case "text/plain":
+        return "txt";
+      case "application/json":
+        return "json";
+      default:
+        return "bin";
+    }
+  }
+
+  /** Concatenates the spooled scenarios into the report, feature by feature. */
+  private void write() {
+    Path report = directory.resolve(REPORT);
+    int scenarios = 0;
+    try {
+      Files.createDirectories(report.getParent());
+    } catch (IOException e) {
+      log.warn("Failed to create report directory {}: {}", report.getParent(), e.getMessage());
+      return;
+    }
+    try (Writer writer = Files.newBufferedWriter(report, UTF_8)) {
+      writer.write("[");
+      String separator = "";
+      for (Feature feature : new ArrayList<>(features.values())) {
+        if (feature.scenarios == 0) {
+          continue;
+        }
+        String header = compact(feature.toMap());
+        writer.write(separator);
+        writer.write(header, 0, header.length() - 1);
+        writer.write(",\"elements\":[\n");
+        // Only the last run of every scenario is kept
+        Map<Integer, Integer> lastRuns = new HashMap<>();
+        for (int i = 0; i < feature.lines.size(); i++) {
+          lastRuns.put(feature.lines.get(i), i);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(feature.spool, UTF_8)) {
+          String line;
+          String elementSeparator = "";
+          for (int i = 0; (line = reader.readLine()) != null; i++) {
+            if (i >= feature.lines.size() || lastRuns.get(feature.lines.get(i)) != i) {
+              continue;
+            }
+            writer.write(elementSeparator);
+            writer.write(line);
+            elementSeparator = ",\n";
+          }
+        }
+        writer.write("]}");
+        separator = ",\n";
+        scenarios += lastRuns.size();
+        Files.delete(feature.spool);
+      }
+      writer.write("]\n");
+    } catch (IOException | UncheckedIOException e) {
+      log.warn("Failed to write report {}: {}", report, e.getMessage());
+      return;
+    }
+    log.info(
+        "Report of {} scenario(s) written to {}, {} attachment(s) of {} KB stored, "
+            + "{} KB of duplicates skipped",
+        scenarios,
+        report,
+        stored.get(),
+        storedBytes.get() / 1024,
+        duplicateBytes.get() / 1024);
+  }
+
+  private static String compact(Object value) {
+    StringBuilder json = new StringBuilder();
+    try (JsonOutput output = JSON.newOutput(json)) {
+      output.setPrettyPrint(false).write(value);
+    }
+    return json.toString();
+  }
+
+  private static String slug(String name) {
+    return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-");
+  }
+
+  /** Feature file of the run and the spool file of its finished scenarios. */
+  private static final class Feature {
+
+    private final String uri;
+    private final String name;
+    private final int line;
+    private final Path spool;
+    // The scenario line of every spooled element, in the spool order
+    private final List<Integer> lines = new ArrayList<>();
+    private int scenarios;
+
+    private Feature(String uri, String source, Path spool) {
+      this.uri = uri;
+      this.spool = spool;
+      String[] lines = source.split("\\R");
+      String featureName = uri.substring(uri.lastIndexOf('/') + 1);
+      int featureLine = 1;
+      for (int i = 0; i < lines.length; i++) {
+        Matcher matcher = FEATURE.matcher(lines[i]);
+        if (matcher.find()) {
+          featureName = lines[i].substring(matcher.end()).trim();
+          featureLine = i + 1;
+          break;
+        }
+      }
+      this.name = featureName;
+      this.line = featureLine;
+    }
+
+    private synchronized void append(int scenarioLine, String element) throws IOException {
+      Files.createDirectories(spool.getParent());
+      Files.write(
+          spool,
+          Collections.singletonList(element),
+          UTF_8,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+      lines.add(scenarioLine);
+      scenarios++;
+    }
+
+    private Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("uri", uri);
+      map.put("id", slug(name));
+      map.put("keyword", "Feature");
+      map.put("name", name);
+      map.put("line", line);
+      map.put("description", "");
+      return map;
+    }
+  }
+
+  /** Scenario being run: its hooks and steps, the last one started receives the attachments. */
+  private static final class Element {
+
+    private final TestCase testCase;
+    private final String startTimestamp;
+    private final Map<String, List<Map<String, Object>>> lists = new LinkedHashMap<>();
+    private List<Map<String, Object>> beforeNextStep = new ArrayList<>();
+    private Map<String, Object> lastStep;
+    private Map<String, Object> current;
+
+    private Element(TestCaseStarted event) {
+      this.testCase = event.getTestCase();
+      this.startTimestamp = event.getInstant().toString();
+      lists.put("before", new ArrayList<>());
+      lists.put("steps", new ArrayList<>());
+      lists.put("after", new ArrayList<>());
+    }
+
+    /** Adds the entry of a started step or hook, step hooks are nested in their step. */
+    @SuppressWarnings("unchecked")
+    private synchronized void start(TestStep testStep, Map<String, Object> entry) {
+      current = entry;
+      if (!(testStep instanceof HookTestStep)) {
+        if (!beforeNextStep.isEmpty()) {
+          entry.put("before", beforeNextStep);
+          beforeNextStep = new ArrayList<>();
+        }
+        lists.get("steps").add(entry);
+        lastStep = entry;
+        return;
+      }
+      HookType type = ((HookTestStep) testStep).getHookType();
+      if (type == HookType.BEFORE) {
+        lists.get("before").add(entry);
+      } else if (type == HookType.AFTER) {
+        lists.get("after").add(entry);
+      } else if (type == HookType.BEFORE_STEP) {
+        beforeNextStep.add(entry);
+      } else {
+        ((List<Object>) lastStep.computeIfAbsent("after", a -> new ArrayList<>())).add(entry);
+      }
+    }
+
+    private synchronized void finish(Map<String, Object> result) {
+      current.put("result", result);
+    }
+
+    /** Adds an attachment or an output line, also when it arrives after the step has finished. */
+    @SuppressWarnings("unchecked")
+    private synchronized void add(String field, Object value) {
+      ((List<Object>) current.computeIfAbsent(field, f -> new ArrayList<>())).add(value);
+    }
+
+    private synchronized Map<String, Object> toMap(String featureName) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("id", slug(featureName) + ";" + slug(testCase.getName()));
+      map.put("keyword", testCase.getKeyword());
+      map.put("type", "scenario");
+      map.put("name", testCase.getName());
+      map.put("line", testCase.getLocation().getLine());
+      map.put("start_timestamp", startTimestamp);
+      List<Map<String, Object>> tags = new ArrayList<>();
+      for (String tag : testCase.getTags()) {
+        tags.add(Collections.singletonMap("name", tag));
+      }
+      map.put("tags", tags);
+      map.putAll(lists);
+      return map;
+    }
+  }
+}
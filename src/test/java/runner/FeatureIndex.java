@@ -0,0 +1,337 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.cucumber.core.feature.FeatureParser;
+import io.cucumber.core.gherkin.Feature;
+import io.cucumber.core.gherkin.Pickle;
+import io.cucumber.core.gherkin.Step;
+import io.cucumber.core.resource.Resource;
+import io.cucumber.cucumberexpressions.Expression;
+import io.cucumber.cucumberexpressions.ExpressionFactory;
+import io.cucumber.cucumberexpressions.ParameterTypeRegistry;
+import io.cucumber.tagexpressions.TagExpressionParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the scenarios of the feature files and of the step definitions they are bound to,
+ * generated at build time into {@code target/cucumber-index.json} by {@link #main}. At startup the
+ * runner selects the scenarios matching the tag expression and the name filter from the index and
+ * passes only their lines as {@code cucumber.features}, so Cucumber parses only the feature files
+ * that have scenarios to run. Steps without a step definition or with several ones are reported at
+ * build time and at startup, before any browser is launched. The index is stale once a feature
+ * file or a glue class changes, is added or removed; a stale index is ignored and Cucumber scans
+ * the features as usual. An explicit {@code cucumber.features} is never replaced.
+ */
+public final class FeatureIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(FeatureIndex.class);
+  private static final Path INDEX = Paths.get("target", "cucumber-index.json");
+  private static final Path GLUE_CLASSES = Paths.get("target", "test-classes");
+  private static final Json JSON = new Json();
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    Path features = Paths.get(args.length > 0 ? args[0] : "src/test/resources/features");
+    String glue = args.length > 1 ? args[1] : "steps";
+    long start = System.nanoTime();
+
+    Map<String, String> definitions = stepDefinitions(glue);
+    ExpressionFactory expressions =
+        new ExpressionFactory(new ParameterTypeRegistry(Locale.ENGLISH));
+    Map<Expression, String> bindings = new LinkedHashMap<>();
+    definitions.forEach((text, method) -> bindings.put(expressions.createExpression(text), method));
+
+    FeatureParser parser = new FeatureParser(UUID::randomUUID);
+    List<Map<String, Object>> indexed = new ArrayList<>();
+    Map<String, List<String>> steps = new TreeMap<>();
+    int scenarios = 0;
+    for (Path file : featureFiles(features)) {
+      Feature feature =
+          parser
+              .parseResource(new FileResource(file))
+              .orElseThrow(() -> new IllegalStateException("Empty feature file " + file));
+      List<Map<String, Object>> pickles = new ArrayList<>();
+      for (Pickle pickle : feature.getPickles()) {
+        Map<String, Object> indexedPickle = new LinkedHashMap<>();
+        indexedPickle.put("name", pickle.getName());
+        indexedPickle.put("line", pickle.getLocation().getLine());
+        indexedPickle.put("tags", pickle.getTags());
+        List<String> pickleSteps = new ArrayList<>();
+        for (Step step : pickle.getSteps()) {
+          pickleSteps.add(step.getText());
+          steps.computeIfAbsent(step.getText(), text -> bind(text, bindings));
+        }
+        indexedPickle.put("steps", pickleSteps);
+        pickles.add(indexedPickle);
+      }
+      Map<String, Object> indexedFeature = new LinkedHashMap<>();
+      indexedFeature.put("path", pathOf(file));
+      indexedFeature.put("sha256", sha256(file));
+      indexedFeature.put("pickles", pickles);
+      indexed.add(indexedFeature);
+      scenarios += pickles.size();
+    }
+
+    Map<String, Object> index = new LinkedHashMap<>();
+    index.put("features_directory", pathOf(features));
+    index.put("glue", glue);
+    index.put("glue_sha256", glueSha256(glue));
+    index.put("features", indexed);
+    index.put("steps", steps);
+    Files.createDirectories(INDEX.getParent());
+    Files.write(INDEX, JSON.toJson(index).getBytes(UTF_8));
+    reportUnbound(steps);
+    log.info(
+        "Indexed {} scenario(s) of {} feature file(s), {} step text(s) and {} step definition(s) "
+            + "in {} ms",
+        scenarios,
+        indexed.size(),
+        steps.size(),
+        definitions.size(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Returns the {@code cucumber.features} value selecting the scenarios to run, or null if the
+   * index is missing or stale, or nothing is selected.
+   *
+   * @param featuresDirectory the features of the runner
+   * @param tags the tag expression of the runner, overridden by {@code cucumber.filter.tags}
+   */
+  @SuppressWarnings("unchecked")
+  static String selectFeatures(String featuresDirectory, String tags) {
+    if (!Files.exists(INDEX)) {
+      return null;
+    }
+    long start = System.nanoTime();
+    try {
+      Map<String, Object> index =
+          JSON.toType(new String(Files.readAllBytes(INDEX), UTF_8), Json.MAP_TYPE);
+      Path features = Paths.get(featuresDirectory);
+      List<Map<String, Object>> indexed = (List<Map<String, Object>>) index.get("features");
+      if (!pathOf(features).equals(index.get("features_directory"))
+          || !isCurrent(features, indexed)
+          || !glueSha256((String) index.get("glue")).equals(index.get("glue_sha256"))) {
+        log.info("Feature index {} is stale, Cucumber scans the features", INDEX);
+        return null;
+      }
+      io.cucumber.tagexpressions.Expression tagExpression =
+          TagExpressionParser.parse(System.getProperty("cucumber.filter.tags", tags));
+      String name = System.getProperty("cucumber.filter.name");
+      Pattern namePattern = name == null ? null : Pattern.compile(name);
+      Map<String, Object> steps = (Map<String, Object>) index.get("steps");
+      List<String> selected = new ArrayList<>();
+      int scenarios = 0;
+      for (Map<String, Object> feature : indexed) {
+        StringBuilder lines = new StringBuilder((String) feature.get("path"));
+        for (Map<String, Object> pickle : (List<Map<String, Object>>) feature.get("pickles")) {
+          if (!tagExpression.evaluate((List<String>) pickle.get("tags"))
+              || (namePattern != null
+                  && !namePattern.matcher((String) pickle.get("name")).find())) {
+            continue;
+          }
+          lines.append(':').append(((Number) pickle.get("line")).intValue());
+          scenarios++;
+          for (String step : (List<String>) pickle.get("steps")) {
+            if (((List<String>) steps.get(step)).size() != 1) {
+              log.warn("Step of '{}' is not bound to one definition: {}", pickle.get("name"), step);
+            }
+          }
+        }
+        if (lines.length() > ((String) feature.get("path")).length()) {
+          selected.add(lines.toString());
+        }
+      }
+      log.info(
+          "Selected {} scenario(s) of {} feature file(s) from the index in {} ms",
+          scenarios,
+          selected.size(),
+          (System.nanoTime() - start) / 1_000_000);
+      return selected.isEmpty() ? null : String.join(",", selected);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to read feature index {}: {}", INDEX, e.getMessage());
+      return null;
+    }
+  }
+
+  /** Returns the step definition texts of the glue package with their methods. */
+  private static Map<String, String> stepDefinitions(String glue)
+      throws IOException, ClassNotFoundException {
+    Map<String, String> definitions = new LinkedHashMap<>();
+    for (Path classFile : glueClasses(glue)) {
+      String fileName = classFile.getFileName().toString();
+      String className = glue + "." + fileName.substring(0, fileName.length() - ".class".length());
+      Class<?> glueClass = Class.forName(className, false, FeatureIndex.class.getClassLoader());
+      for (Method method : glueClass.getDeclaredMethods()) {
+        for (Annotation annotation : method.getDeclaredAnnotations()) {
+          if (annotation.annotationType().getPackage().getName().equals("io.cucumber.java.en")) {
+            definitions.put(expressionOf(annotation), locationOf(method));
+          }
+        }
+      }
+    }
+    return definitions;
+  }
+
+  private static String expressionOf(Annotation annotation) {
+    try {
+      return (String) annotation.annotationType().getMethod("value").invoke(annotation);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Step annotation without value: " + annotation, e);
+    }
+  }
+
+  /** Returns the method the way Cucumber reports the location of a step definition. */
+  private static String locationOf(Method method) {
+    return method.getDeclaringClass().getName()
+        + "."
+        + method.getName()
+        + Arrays.stream(method.getParameterTypes())
+            .map(Class::getName)
+            .collect(Collectors.joining(",", "(", ")"));
+  }
+
+  private static List<String> bind(String text, Map<Expression, String> bindings) {
+    List<String> methods = new ArrayList<>();
+    bindings.forEach(
+        (expression, method) -> {
+          if (expression.match(text) != null) {
+            methods.add(method);
+          }
+        });
+    return methods;
+  }
+
+  private static void reportUnbound(Map<String, List<String>> steps) {
+    steps.forEach(
+        (text, methods) -> {
+          if (methods.isEmpty()) {
+            log.warn("Undefined step: {}", text);
+          } else if (methods.size() > 1) {
+            log.warn("Ambiguous step: {} matches {}", text, methods);
+          }
+        });
+  }
+
+  private static boolean isCurrent(Path features, List<Map<String, Object>> indexed)
+      throws IOException {
+    List<Path> files = featureFiles(features);
+    if (files.size() != indexed.size()) {
+      return false;
+    }
+    for (int i = 0; i < files.size(); i++) {
+      Map<String, Object> feature = indexed.get(i);
+      if (!pathOf(files.get(i)).equals(feature.get("path"))
+          || !sha256(files.get(i)).equals(feature.get("sha256"))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<Path> featureFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files
+          .filter(file -> file.getFileName().toString().endsWith(".feature"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static List<Path> glueClasses(String glue) throws IOException {
+    List<Path> classes = new ArrayList<>();
+    Path directory = GLUE_CLASSES.resolve(glue.replace('.', '/'));
+    if (Files.isDirectory(directory)) {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.class")) {
+        files.forEach(classes::add);
+      }
+    }
+    classes.sort(null);
+    return classes;
+  }
+
+  /** Returns the digest of the compiled glue classes, the bindings change with them. */
+  private static String glueSha256(String glue) throws IOException {
+    MessageDigest digest = sha256Digest();
+    for (Path classFile : glueClasses(glue)) {
+      digest.update(classFile.getFileName().toString().getBytes(UTF_8));
+      digest.update(Files.readAllBytes(classFile));
+    }
+    return hex(digest.digest());
+  }
+
+  private static String sha256(Path file) throws IOException {
+    return hex(sha256Digest().digest(Files.readAllBytes(file)));
+  }
+
+  private static MessageDigest sha256Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /** Returns the path relative to the working directory with forward slashes. */
+  private static String pathOf(Path path) {
+    Path absolute = path.toAbsolutePath().normalize();
+    Path workingDirectory = Paths.get("").toAbsolutePath();
+    Path relative =
+        absolute.startsWith(workingDirectory) ? workingDirectory.relativize(absolute) : absolute;
+    return relative.toString().replace('\\', '/');
+  }
+
+  /** Feature file read by the Cucumber feature parser. */
+  private static final class FileResource implements Resource {
+
+    private final Path file;
+
+    private FileResource(Path file) {
+      this.file = file;
+    }
+
+    @Override
+    public URI getUri() {
+      return file.toUri();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return Files.newInputStream(file);
+    }
+  }
+
+  private FeatureIndex() {}
+}
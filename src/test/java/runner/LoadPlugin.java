@@ -0,0 +1,171 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Result;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import metrics.Histogram;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cucumber plugin counting the scenarios and steps replayed by {@link LoadRunner}. The step
+ * latencies and errors are kept per step definition for the whole run and, for the live report,
+ * since the previous report. Skipped steps are not counted, undefined and ambiguous ones are
+ * errors. Hooks are kept per hook as well, apart from the step totals, as a failed hook skips all
+ * the steps of the scenario.
+ */
+public final class LoadPlugin implements ConcurrentEventListener {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadPlugin.class);
+
+  private static final Map<String, StepStatistics> steps = new TreeMap<>();
+  private static final Map<String, StepStatistics> hooks = new TreeMap<>();
+  private static Histogram interval = new Histogram();
+  private static long intervalErrors;
+  private static long intervalScenarios;
+  private static long intervalStartNanos = System.nanoTime();
+  private static long scenarios;
+  private static long failedScenarios;
+
+  @Override
+  public void setEventPublisher(EventPublisher publisher) {
+    publisher.registerHandlerFor(TestStepFinished.class, LoadPlugin::handleStepFinished);
+    publisher.registerHandlerFor(TestCaseFinished.class, LoadPlugin::handleScenarioFinished);
+  }
+
+  private static void handleStepFinished(TestStepFinished event) {
+    Result result = event.getResult();
+    if (result.getStatus() == Status.SKIPPED) {
+      return;
+    }
+    long micros = result.getDuration().toNanos() / 1000;
+    boolean error = result.getStatus() != Status.PASSED;
+    if (event.getTestStep() instanceof HookTestStep) {
+      String hook = "hook: " + event.getTestStep().getCodeLocation();
+      synchronized (LoadPlugin.class) {
+        hooks.computeIfAbsent(hook, h -> new StepStatistics()).record(micros, error);
+      }
+      return;
+    }
+    PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+    // Undefined steps have no step definition
+    String definition = step.getCodeLocation();
+    if (definition == null) {
+      definition = "undefined: " + step.getStep().getText();
+    }
+    synchronized (LoadPlugin.class) {
+      steps.computeIfAbsent(definition, d -> new StepStatistics()).record(micros, error);
+      interval.record(micros);
+      if (error) {
+        intervalErrors++;
+      }
+    }
+  }
+
+  private static synchronized void handleScenarioFinished(TestCaseFinished event) {
+    scenarios++;
+    intervalScenarios++;
+    if (event.getResult().getStatus() != Status.PASSED) {
+      failedScenarios++;
+    }
+  }
+
+  /** Logs the throughput and the step latencies since the previous report. */
+  static synchronized void logInterval(int activeUsers) {
+    long now = System.nanoTime();
+    double minutes = Math.max(1, now - intervalStartNanos) / 60e9;
+    long stepCount = interval.getCount();
+    log.info(
+        "{} user(s): {} scenarios/min, {} steps/min, step p50 {} ms, p95 {} ms, p99 {} ms, "
+            + "{}% step errors",
+        activeUsers,
+        Math.round(intervalScenarios / minutes),
+        Math.round(stepCount / minutes),
+        interval.percentile(50) / 1000,
+        interval.percentile(95) / 1000,
+        interval.percentile(99) / 1000,
+        stepCount == 0 ? 0 : Math.round(intervalErrors * 1000.0 / stepCount) / 10.0);
+    interval = new Histogram();
+    intervalErrors = 0;
+    intervalScenarios = 0;
+    intervalStartNanos = now;
+  }
+
+  /** Writes the summary of the whole run with the load settings to the file. */
+  static synchronized void writeSummary(Path file, Map<String, Object> settings, long nanos)
+      throws IOException {
+    double minutes = Math.max(1, nanos) / 60e9;
+    Histogram all = new Histogram();
+    long stepCount = 0;
+    long errors = 0;
+    Map<String, Object> definitions = new LinkedHashMap<>();
+    for (Map.Entry<String, StepStatistics> entry : steps.entrySet()) {
+      StepStatistics statistics = entry.getValue();
+      all.merge(statistics.latency);
+      stepCount += statistics.latency.getCount();
+      errors += statistics.errors;
+      definitions.put(entry.getKey(), statistics.toMap());
+    }
+    Map<String, Object> hookDefinitions = new LinkedHashMap<>();
+    hooks.forEach((hook, statistics) -> hookDefinitions.put(hook, statistics.toMap()));
+    Map<String, Object> summary = new LinkedHashMap<>(settings);
+    summary.put("elapsed_s", nanos / 1_000_000_000);
+    summary.put("scenarios", scenarios);
+    summary.put("failed_scenarios", failedScenarios);
+    summary.put("scenarios_per_minute", Math.round(scenarios / minutes * 10) / 10.0);
+    summary.put("steps", stepCount);
+    summary.put("steps_per_minute", Math.round(stepCount / minutes * 10) / 10.0);
+    summary.put("step_error_rate", stepCount == 0 ? 0 : (double) errors / stepCount);
+    summary.put("step_latency", all.toMap());
+    summary.put("step_definitions", definitions);
+    summary.put("hooks", hookDefinitions);
+    Files.createDirectories(file.getParent());
+    Files.write(file, new Json().toJson(summary).getBytes(UTF_8));
+    log.info(
+        "Replayed {} scenario(s), {} failed, {} scenarios/min, {} steps/min, "
+            + "step p50 {} ms, p95 {} ms, p99 {} ms, summary written to {}",
+        scenarios,
+        failedScenarios,
+        summary.get("scenarios_per_minute"),
+        summary.get("steps_per_minute"),
+        all.percentile(50) / 1000,
+        all.percentile(95) / 1000,
+        all.percentile(99) / 1000,
+        file);
+  }
+
+  private static final class StepStatistics {
+
+    private final Histogram latency = new Histogram();
+    private long errors;
+
+    private void record(long micros, boolean error) {
+      latency.record(micros);
+      if (error) {
+        errors++;
+      }
+    }
+
+    private Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("errors", errors);
+      map.put("error_rate", latency.getCount() == 0 ? 0 : (double) errors / latency.getCount());
+      map.put("latency", latency.toMap());
+      return map;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package runner;
+
+import browser.Browser;
+import io.cucumber.testng.CucumberOptions;
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+import io.cucumber.testng.TestNGCucumberRunner;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pages.PageProvider;
+import stub.SlackStub;
+
+/**
+ * Replays the scenarios as {@code load_users} virtual users for {@code load_duration_s} seconds (60
+ * by default). The users start evenly over {@code load_ramp_up_s} seconds, every user runs the
+ * scenarios in turn and thinks {@code load_think_time_ms} (1 second by default, randomized by up
+ * to 50% either way) between them. The scenarios are those of {@code StarringMessage.feature}
+ * unless {@code cucumber.features} or {@code cucumber.filter.tags} select others. A scenario in
+ * progress at the end of the duration is completed. The throughput and the step latencies are
+ * logged every {@code load_report_interval_s} seconds (10 by default) and summed up with the error
+ * rate per step definition in {@code target/load-reports/load-summary.json}, see {@link
+ * LoadPlugin}. Run by {@code mvn -Pload integration-test}, with {@code browser_pool_size} or {@code
+ * browser_contexts} the users do not launch a browser per scenario.
+ */
+@CucumberOptions(
+    features = "src/test/resources/features/StarringMessage.feature",
+    glue = {"steps"},
+    tags = "not @Ignore",
+    plugin = {"runner.LoadPlugin"})
+public final class LoadRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadRunner.class);
+  private static final int USERS = Integer.getInteger("load_users", 1);
+  private static final long RAMP_UP_MS = Long.getLong("load_ramp_up_s", 0) * 1000;
+  private static final long DURATION_MS = Long.getLong("load_duration_s", 60) * 1000;
+  private static final long THINK_TIME_MS = Long.getLong("load_think_time_ms", 1000);
+  private static final long REPORT_INTERVAL_S = Long.getLong("load_report_interval_s", 10);
+  private static final Path SUMMARY = Paths.get("target", "load-reports", "load-summary.json");
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Browser.checkFlags();
+    if (SlackStub.isEnabled()) {
+      SlackStub.start();
+    }
+    TestNGCucumberRunner cucumber = new TestNGCucumberRunner(LoadRunner.class);
+    List<Pickle> scenarios = new ArrayList<>();
+    for (Object[] scenario : cucumber.provideScenarios()) {
+      scenarios.add(((PickleWrapper) scenario[0]).getPickle());
+    }
+    if (scenarios.isEmpty()) {
+      throw new IllegalStateException("No scenarios to replay");
+    }
+    log.info(
+        "Replaying {} scenario(s) as {} user(s) for {} s, ramp up {} s, think time {} ms",
+        scenarios.size(),
+        USERS,
+        DURATION_MS / 1000,
+        RAMP_UP_MS / 1000,
+        THINK_TIME_MS);
+
+    AtomicInteger activeUsers = new AtomicInteger();
+    ScheduledExecutorService reporter =
+        Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "load-reporter"));
+    reporter.scheduleAtFixedRate(
+        () -> LoadPlugin.logInterval(activeUsers.get()),
+        REPORT_INTERVAL_S,
+        REPORT_INTERVAL_S,
+        TimeUnit.SECONDS);
+    AtomicInteger nextUser = new AtomicInteger();
+    ExecutorService users =
+        Executors.newFixedThreadPool(
+            USERS, r -> new Thread(r, "virtual-user-" + nextUser.incrementAndGet()));
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+    for (int user = 0; user < USERS; user++) {
+      long startDelayMs = RAMP_UP_MS * user / USERS;
+      int first = user;
+      users.execute(
+          () -> runUser(cucumber, scenarios, first, startDelayMs, deadline, activeUsers));
+    }
+    users.shutdown();
+    users.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    long elapsed = System.nanoTime() - start;
+    reporter.shutdownNow();
+    cucumber.finish();
+
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("users", USERS);
+    settings.put("ramp_up_s", RAMP_UP_MS / 1000);
+    settings.put("duration_s", DURATION_MS / 1000);
+    settings.put("think_time_ms", THINK_TIME_MS);
+    LoadPlugin.writeSummary(SUMMARY, settings, elapsed);
+    PageProvider.logStatistics();
+    Browser.shutdown();
+    SlackStub.stop();
+  }
+
+  /** Runs the scenarios in turn, starting from the given one, until the deadline. */
+  private static void runUser(
+      TestNGCucumberRunner cucumber,
+      List<Pickle> scenarios,
+      int first,
+      long startDelayMs,
+      long deadline,
+      AtomicInteger activeUsers) {
+    try {
+      Thread.sleep(startDelayMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    activeUsers.incrementAndGet();
+    try {
+      for (int i = first; System.nanoTime() < deadline; i++) {
+        try {
+          cucumber.runScenario(scenarios.get(i % scenarios.size()));
+        } catch (Throwable t) {
+          // Counted by the plugin, the user goes on with the next scenario
+          log.debug("Scenario failed: {}", t.getMessage());
+        }
+        long thinkMs = (long) (THINK_TIME_MS * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+        long leftMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        Thread.sleep(Math.max(0, Math.min(thinkMs, leftMs)));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      activeUsers.decrementAndGet();
+    }
+  }
+
+  private LoadRunner() {}
+}
@@ -0,0 +1,228 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonInput;
+import org.openqa.selenium.json.JsonOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Combines the reports of the shards found in {@code target/cucumber-reports/shard-*} into the
+ * {@code CucumberTestReport.json} and {@code rerun.txt} of {@code target/cucumber-reports}, the
+ * scenarios of the same feature file are put under one feature. The shard reports are read one
+ * element at a time and the elements spooled per feature, so the memory does not grow with the
+ * run. The content addressed attachments
+ * are moved to the common {@code attachments} directory. The shard directories of other
+ * nodes are supposed to be copied there first. The durations of the combined report are taken
+ * into the shared scenario history the shards are split by. Run by {@code mvn -Pmerge verify},
+ * which also generates the HTML report from the combined one.
+ */
+public final class ReportMerger {
+
+  private static final Logger log = LoggerFactory.getLogger(ReportMerger.class);
+  private static final Path CUCUMBER_REPORT = Paths.get("json-reports", "CucumberTestReport.json");
+  private static final Path RERUN_REPORT = Paths.get("rerun-reports", "rerun.txt");
+  private static final Path ATTACHMENTS = Paths.get("attachments");
+  private static final Json JSON = new Json();
+
+  public static void main(String[] args) throws IOException {
+    List<Path> shards = new ArrayList<>();
+    try (DirectoryStream<Path> directories = Files.newDirectoryStream(Shard.ROOT, "shard-*")) {
+      directories.forEach(shards::add);
+    }
+    shards.sort(null);
+    if (shards.isEmpty()) {
+      throw new IllegalStateException("No shard reports found in " + Shard.ROOT);
+    }
+
+    Path spool = Files.createTempDirectory(Shard.ROOT, "merge-spool");
+    Map<String, Feature> features = new TreeMap<>();
+    Set<String> reruns = new LinkedHashSet<>();
+    try {
+      for (Path shard : shards) {
+        int scenarios = mergeFeatures(shard.resolve(CUCUMBER_REPORT), features, spool);
+        Path rerun = shard.resolve(RERUN_REPORT);
+        if (Files.exists(rerun)) {
+          for (String line : Files.readAllLines(rerun, UTF_8)) {
+            for (String scenario : line.trim().split("\\s+")) {
+              if (!scenario.isEmpty()) {
+                reruns.add(scenario);
+              }
+            }
+          }
+        }
+        moveAttachments(shard.resolve(ATTACHMENTS), Shard.ROOT.resolve(ATTACHMENTS));
+        log.info("{}: {} scenario(s), makespan {} ms", shard, scenarios, makespanOf(shard));
+      }
+
+      Path report = Shard.ROOT.resolve(CUCUMBER_REPORT);
+      Files.createDirectories(report.getParent());
+      writeReport(report, features.values());
+      ScenarioHistory.share(report);
+      Path rerun = Shard.ROOT.resolve(RERUN_REPORT);
+      Files.createDirectories(rerun.getParent());
+      Files.write(rerun, reruns, UTF_8);
+      log.info(
+          "Merged {} shard(s) into {} with {} failed scenario(s)",
+          shards.size(),
+          report,
+          reruns.size());
+    } finally {
+      for (Feature feature : features.values()) {
+        Files.deleteIfExists(feature.spool);
+      }
+      Files.deleteIfExists(spool);
+    }
+  }
+
+  /**
+   * Spools the elements of the report to the features by URI, one element at a time, returns the
+   * number of scenarios.
+   */
+  private static int mergeFeatures(Path report, Map<String, Feature> features, Path spool)
+      throws IOException {
+    if (!Files.exists(report)) {
+      log.warn("Missing shard report {}", report);
+      return 0;
+    }
+    int scenarios = 0;
+    try (Reader reader = Files.newBufferedReader(report, UTF_8);
+        JsonInput input = JSON.newInput(reader)) {
+      input.beginArray();
+      while (input.hasNext()) {
+        // The elements are spooled before the URI of the feature may be known
+        Map<String, Object> header = new LinkedHashMap<>();
+        Path elements = Files.createTempFile(spool, "elements", ".json");
+        input.beginObject();
+        while (input.hasNext()) {
+          String name = input.nextName();
+          if (!"elements".equals(name)) {
+            header.put(name, input.read(Json.OBJECT_TYPE));
+            continue;
+          }
+          try (Writer writer = Files.newBufferedWriter(elements, UTF_8)) {
+            input.beginArray();
+            while (input.hasNext()) {
+              Map<String, Object> element = input.read(Json.MAP_TYPE);
+              if ("scenario".equals(element.get("type"))) {
+                scenarios++;
+              }
+              writer.write(compact(element));
+              writer.write("\n");
+            }
+            input.endArray();
+          }
+        }
+        input.endObject();
+        String uri = String.valueOf(header.get("uri"));
+        Feature feature = features.get(uri);
+        if (feature == null) {
+          feature = new Feature(header, spool.resolve(features.size() + ".json"));
+          features.put(uri, feature);
+        }
+        try (OutputStream out =
+            Files.newOutputStream(
+                feature.spool, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+          Files.copy(elements, out);
+        }
+        Files.delete(elements);
+      }
+      input.endArray();
+    }
+    return scenarios;
+  }
+
+  /** Writes the features with their spooled elements, one element at a time. */
+  private static void writeReport(Path report, Collection<Feature> features) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(report, UTF_8)) {
+      writer.write("[");
+      String separator = "";
+      for (Feature feature : features) {
+        String header = compact(feature.header);
+        writer.write(separator);
+        writer.write(header, 0, header.length() - 1);
+        writer.write(header.length() > 2 ? ",\"elements\":[\n" : "\"elements\":[\n");
+        try (BufferedReader reader = Files.newBufferedReader(feature.spool, UTF_8)) {
+          String elementSeparator = "";
+          for (String line; (line = reader.readLine()) != null; ) {
+            writer.write(elementSeparator);
+            writer.write(line);
+            elementSeparator = ",\n";
+          }
+        }
+        writer.write("]}");
+        separator = ",\n";
+      }
+      writer.write("]\n");
+    }
+  }
+
+  private static String compact(Object value) {
+    StringBuilder json = new StringBuilder();
+    try (JsonOutput output = JSON.newOutput(json)) {
+      output.setPrettyPrint(false).write(value);
+    }
+    return json.toString();
+  }
+
+  /** Moves the attachments not stored yet, the same content has the same file name. */
+  private static void moveAttachments(Path from, Path to) throws IOException {
+    if (!Files.isDirectory(from)) {
+      return;
+    }
+    Files.createDirectories(to);
+    try (DirectoryStream<Path> attachments = Files.newDirectoryStream(from)) {
+      for (Path attachment : attachments) {
+        Path target = to.resolve(attachment.getFileName());
+        if (!Files.exists(target)) {
+          Files.move(attachment, target);
+        }
+      }
+    }
+  }
+
+  private static Object makespanOf(Path shard) {
+    Path schedule = shard.resolve("schedule.json");
+    try {
+      String json = new String(Files.readAllBytes(schedule), UTF_8);
+      Map<String, Object> summary = JSON.toType(json, Json.MAP_TYPE);
+      return summary.get("actual_makespan_ms");
+    } catch (IOException | RuntimeException e) {
+      return "unknown";
+    }
+  }
+
+  /** Feature of the merged report: the fields of its first shard and its spooled elements. */
+  private static final class Feature {
+
+    private final Map<String, Object> header;
+    private final Path spool;
+
+    private Feature(Map<String, Object> header, Path spool) {
+      this.header = header;
+      this.spool = spool;
+    }
+  }
+
+  private ReportMerger() {}
+}
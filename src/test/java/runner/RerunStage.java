@@ -0,0 +1,150 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import browser.Browser;
+import io.cucumber.testng.PickleWrapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries the scenarios failed in the main pass in the same JVM right after it, up to {@code
+ * rerun_attempts} times each (none by default). With {@code rerun_isolation=warm} (the default)
+ * the reruns run in parallel and take over the pooled browser sessions and the cached sign ins of
+ * the main pass workers. With {@code rerun_isolation=fresh} they run one at a time, each in a new
+ * browser signed in through the login form. A main pass failure to be rerun is reported to TestNG
+ * as skipped, so only the outcome of the last attempt counts, and the report keeps only the last
+ * attempt of every scenario. Every rerun is marked by a "Rerun" attachment in the report, the
+ * outcome and the extra wall time are written to {@code reruns.json} in the reports directory of
+ * the shard.
+ */
+public final class RerunStage {
+
+  private static final Logger log = LoggerFactory.getLogger(RerunStage.class);
+  private static final Path REPORT = Shard.REPORTS.resolve("reruns.json");
+  private static final int ATTEMPTS = Integer.getInteger("rerun_attempts", 0);
+  private static final Isolation ISOLATION =
+      Isolation.valueOf(System.getProperty("rerun_isolation", "warm").toUpperCase(Locale.ROOT));
+  private static final ThreadLocal<String> ATTEMPT = new ThreadLocal<>();
+
+  private final Queue<Object[]> failed = new ConcurrentLinkedQueue<>();
+  private final Queue<String> passedOnRerun = new ConcurrentLinkedQueue<>();
+  private final Queue<String> stillFailing = new ConcurrentLinkedQueue<>();
+  private final AtomicLong finishedAt = new AtomicLong();
+  private final ReentrantLock oneAtATime = new ReentrantLock();
+  private long startedAt;
+
+  /** Returns the description of the rerun the current thread runs, or null in the main pass. */
+  public static String currentAttempt() {
+    return ATTEMPT.get();
+  }
+
+  /** Remembers a scenario failed in the main pass, returns whether it is going to be rerun. */
+  boolean failed(Object[] scenario) {
+    if (ATTEMPTS > 0) {
+      failed.add(scenario);
+      return true;
+    }
+    return false;
+  }
+
+  /** Starts the stage, returns the failed scenarios to rerun. */
+  Object[][] start() {
+    startedAt = System.currentTimeMillis();
+    if (!failed.isEmpty()) {
+      log.info(
+          "Rerunning {} failed scenario(s) up to {} time(s), {} isolation",
+          failed.size(),
+          ATTEMPTS,
+          ISOLATION.name().toLowerCase(Locale.ROOT));
+    }
+    return failed.toArray(new Object[0][]);
+  }
+
+  /**
+   * Reruns the scenario until it passes, rethrows the failure of the last attempt. The reruns run
+   * on the data provider threads of the main pass, the fresh ones take turns.
+   */
+  void rerun(Object[] scenario, Runnable runScenario) {
+    if (ISOLATION != Isolation.FRESH) {
+      rerunUntilPassed(scenario, runScenario);
+      return;
+    }
+    oneAtATime.lock();
+    try {
+      rerunUntilPassed(scenario, runScenario);
+    } finally {
+      oneAtATime.unlock();
+    }
+  }
+
+  private void rerunUntilPassed(Object[] scenario, Runnable runScenario) {
+    String key = ScenarioHistory.keyOf(((PickleWrapper) scenario[0]).getPickle());
+    try {
+      for (int attempt = 1; ; attempt++) {
+        ATTEMPT.set(String.format("Rerun attempt %d of %d", attempt, ATTEMPTS));
+        Browser.setIsolated(ISOLATION == Isolation.FRESH);
+        try {
+          runScenario.run();
+          passedOnRerun.add(key);
+          log.info("Scenario {} passed on rerun attempt {}", key, attempt);
+          return;
+        } catch (Throwable t) {
+          if (attempt >= ATTEMPTS) {
+            stillFailing.add(key);
+            throw t;
+          }
+          log.info("Scenario {} failed on rerun attempt {}: {}", key, attempt, t.getMessage());
+        } finally {
+          ATTEMPT.remove();
+          Browser.setIsolated(false);
+        }
+      }
+    } finally {
+      finishedAt.accumulateAndGet(System.currentTimeMillis(), Math::max);
+    }
+  }
+
+  /** Writes the outcome of the reruns and the wall time they added to the run. */
+  void finish() {
+    if (failed.isEmpty()) {
+      return;
+    }
+    long extra = Math.max(0, finishedAt.get() - startedAt);
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("attempts", ATTEMPTS);
+    report.put("isolation", ISOLATION.name().toLowerCase(Locale.ROOT));
+    report.put("failed_in_main_pass", failed.size());
+    report.put("passed_on_rerun", new ArrayList<>(passedOnRerun));
+    report.put("still_failing", new ArrayList<>(stillFailing));
+    report.put("extra_wall_time_ms", extra);
+    log.info(
+        "Reruns took {} ms extra: {} scenario(s) passed, {} still failing",
+        extra,
+        passedOnRerun.size(),
+        stillFailing.size());
+    try {
+      Files.createDirectories(REPORT.getParent());
+      Files.write(REPORT, new Json().toJson(report).getBytes(UTF_8));
+    } catch (IOException e) {
+      log.warn("Failed to write rerun report to {}: {}", REPORT, e.getMessage());
+    }
+  }
+
+  private enum Isolation {
+    WARM,
+    FRESH
+  }
+}
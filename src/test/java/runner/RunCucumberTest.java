@@ -1,26 +1,116 @@
 package runner;
 
+import browser.Browser;
 import io.cucumber.testng.AbstractTestNGCucumberTests;
 import io.cucumber.testng.CucumberOptions;
+import io.cucumber.testng.FeatureWrapper;
+import io.cucumber.testng.PickleWrapper;
+import java.io.IOException;
+import org.apache.log4j.LogManager;
+import org.testng.ITestContext;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import pages.PageProvider;
+import stub.SlackStub;
 
 /**
- * Cucumber parallel test runner.
+ * Cucumber parallel test runner. The report plugins write to the directory of the {@link Shard},
+ * {@code target/cucumber-reports} unless the run is sharded. The scenarios to run are selected from
+ * the {@link FeatureIndex} while it is up to date. The scenarios are scheduled and the data
+ * provider threads sized to the workers in {@code @BeforeClass}: TestNG runs the configuration
+ * methods of the class before its test methods start their data provider threads. The reruns use
+ * the same threads.
  */
 @CucumberOptions(
     features = "src/test/resources/features",
     glue = {"steps"},
     tags = "not @Ignore",
-    plugin = {
-      "pretty",
-      "html:target/cucumber-reports/cucumber-pretty",
-      "json:target/cucumber-reports/json-reports/CucumberTestReport.json",
-      "rerun:target/cucumber-reports/rerun-reports/rerun.txt"
-    })
+    plugin = {"pretty"})
 public class RunCucumberTest extends AbstractTestNGCucumberTests {
 
+  static {
+    // Read by the Cucumber runner created before the class, in addition to the annotation plugins
+    String plugins = System.getProperty("cucumber.plugin");
+    System.setProperty(
+        "cucumber.plugin", plugins == null ? Shard.plugins() : plugins + "," + Shard.plugins());
+    // Parses only the feature files with scenarios to run, unless the features are given
+    if (System.getProperty("cucumber.features") == null) {
+      CucumberOptions options = RunCucumberTest.class.getAnnotation(CucumberOptions.class);
+      String features = FeatureIndex.selectFeatures(options.features()[0], options.tags());
+      if (features != null) {
+        System.setProperty("cucumber.features", features);
+      }
+    }
+    // Flushes the log events still queued for the console, the Cucumber runner logs until the end
+    Runtime.getRuntime().addShutdownHook(new Thread(LogManager::shutdown, "log-shutdown"));
+  }
+
+  private final ScenarioScheduler scheduler = new ScenarioScheduler();
+  private final RerunStage reruns = new RerunStage();
+  private Object[][] scheduled = new Object[0][];
+
+  /** Provides the scenarios longest first, as scheduled before the class. */
   @DataProvider(parallel = true)
   public Object[][] scenarios() {
-    return super.scenarios();
+    return scheduled;
+  }
+
+  @Override
+  @Test(groups = "cucumber", description = "Runs Cucumber Scenarios", dataProvider = "scenarios")
+  public void runScenario(PickleWrapper pickleWrapper, FeatureWrapper featureWrapper) {
+    try {
+      super.runScenario(pickleWrapper, featureWrapper);
+    } catch (SkipException e) {
+      throw e;
+    } catch (Throwable t) {
+      if (reruns.failed(new Object[] {pickleWrapper, featureWrapper})) {
+        // Retried after the main pass, the rerun reports the outcome of the scenario
+        throw new SkipException("Failed in the main pass, to be rerun: " + t.getMessage(), t);
+      }
+      throw t;
+    } finally {
+      scheduler.scenarioFinished();
+    }
+  }
+
+  /** Provides the scenarios failed in the main pass once it is over. */
+  @DataProvider(parallel = true)
+  public Object[][] failedScenarios() {
+    return reruns.start();
+  }
+
+  @Test(
+      groups = "cucumber",
+      description = "Reruns failed Cucumber Scenarios",
+      dataProvider = "failedScenarios",
+      dependsOnMethods = "runScenario",
+      alwaysRun = true)
+  public void rerunScenario(PickleWrapper pickleWrapper, FeatureWrapper featureWrapper) {
+    reruns.rerun(
+        new Object[] {pickleWrapper, featureWrapper},
+        () -> super.runScenario(pickleWrapper, featureWrapper));
+  }
+
+  @BeforeClass(alwaysRun = true)
+  public void setUpRun(ITestContext context) throws IOException {
+    Browser.checkFlags();
+    if (SlackStub.isEnabled()) {
+      SlackStub.start();
+    }
+    // Runs after the Cucumber runner is created by the @BeforeClass of the superclass
+    scheduled = scheduler.schedule(super.scenarios());
+    context.getSuite().getXmlSuite().setDataProviderThreadCount(scheduler.getWorkers());
+  }
+
+  @AfterClass(alwaysRun = true)
+  public void tearDownRun() {
+    scheduler.finish();
+    reruns.finish();
+    PageProvider.logStatistics();
+    Browser.shutdown();
+    SlackStub.stop();
   }
 }
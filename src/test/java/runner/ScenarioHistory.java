@@ -0,0 +1,233 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.cucumber.testng.Pickle;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scenario durations of the previous runs, persisted in {@code scenario_history_file} ({@code
+ * scenario-durations.properties} in the working directory by default) so they survive {@code mvn
+ * clean}. On load the history takes in the durations of the passed scenarios of the Cucumber JSON
+ * report left by the previous run of the same shard, each new duration weighs half of the
+ * estimate. The file is saved under a file lock, merging the durations taken in with those saved
+ * meanwhile by the other shards of the host.
+ *
+ * <p>The shards are split by the {@linkplain #shared() shared history} instead, which every node
+ * has to read the same: {@code shard_durations_file} ({@code shard-durations.properties}, kept
+ * under version control, by default). {@link ReportMerger} takes the merged report of a sharded
+ * run in, so committing the file rebalances the next runs.
+ */
+final class ScenarioHistory {
+
+  private static final Logger log = LoggerFactory.getLogger(ScenarioHistory.class);
+  private static final Path REPORT =
+      Shard.REPORTS.resolve(Paths.get("json-reports", "CucumberTestReport.json"));
+  private static final Path FILE =
+      Paths.get(System.getProperty("scenario_history_file", "scenario-durations.properties"));
+  private static final Path SHARED_FILE =
+      Paths.get(System.getProperty("shard_durations_file", "shard-durations.properties"));
+  // The reports of the shards are taken in apart, each by its own timestamp
+  private static final String REPORT_TIMESTAMP =
+      Shard.isEnabled() ? "report.timestamp.shard-" + Shard.INDEX : "report.timestamp";
+  private static final double LATEST_WEIGHT = 0.5;
+  private static final Json JSON = new Json();
+
+  private final Path file;
+  private final Properties durations;
+
+  private ScenarioHistory(Path file) {
+    this.file = file;
+    this.durations = read(file);
+  }
+
+  static ScenarioHistory load() {
+    ScenarioHistory history = new ScenarioHistory(FILE);
+    history.update(REPORT, REPORT_TIMESTAMP);
+    return history;
+  }
+
+  /** Returns the history the shards are split by, the same on every node of the checkout. */
+  static ScenarioHistory shared() {
+    return new ScenarioHistory(SHARED_FILE);
+  }
+
+  /** Takes the durations of the merged report of a sharded run into the shared history. */
+  static void share(Path mergedReport) {
+    new ScenarioHistory(SHARED_FILE).update(mergedReport, "report.timestamp");
+  }
+
+  private static Properties read(Path file) {
+    Properties durations = new Properties();
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+        durations.load(reader);
+      } catch (IOException e) {
+        log.warn("Failed to load scenario history from {}: {}", file, e.getMessage());
+      }
+    }
+    return durations;
+  }
+
+  /** Returns the key of the scenario: the feature file name and the scenario line. */
+  static String keyOf(Pickle pickle) {
+    return keyOf(pickle.getUri().toString(), pickle.getLine());
+  }
+
+  private static String keyOf(String uri, Object line) {
+    return uri.substring(uri.lastIndexOf('/') + 1) + ":" + line;
+  }
+
+  /** Returns the estimated duration of the scenario in milliseconds, or -1 if it is unknown. */
+  long estimate(String key) {
+    return Long.parseLong(durations.getProperty(key, "-1"));
+  }
+
+  /**
+   * Takes in the durations of the report if it has not been taken in yet. The report is read one
+   * element at a time.
+   */
+  private void update(Path report, String timestampKey) {
+    if (!Files.exists(report)) {
+      return;
+    }
+    try {
+      String timestamp = String.valueOf(Files.getLastModifiedTime(report).toMillis());
+      if (timestamp.equals(durations.getProperty(timestampKey))) {
+        return;
+      }
+      Map<String, Long> updated = new HashMap<>();
+      try (Reader reader = Files.newBufferedReader(report, UTF_8);
+          JsonInput input = JSON.newInput(reader)) {
+        input.beginArray();
+        while (input.hasNext()) {
+          readFeature(input, updated);
+        }
+        input.endArray();
+      }
+      save(updated, timestampKey, timestamp);
+      log.info(
+          "Scenario history {} updated with {} passed scenario(s) of {}",
+          file,
+          updated.size(),
+          report);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to read scenario durations from {}: {}", report, e.getMessage());
+    }
+  }
+
+  /** Adds the durations of the passed scenarios of the feature by their keys. */
+  private static void readFeature(JsonInput input, Map<String, Long> updated) {
+    String uri = null;
+    // The durations by scenario line, keyed once the URI of the feature is read
+    Map<Object, Long> passed = new LinkedHashMap<>();
+    input.beginObject();
+    while (input.hasNext()) {
+      switch (input.nextName()) {
+        case "uri":
+          uri = input.nextString();
+          break;
+        case "elements":
+          // The report repeats the background before every scenario of the feature
+          Duration background = new Duration();
+          input.beginArray();
+          while (input.hasNext()) {
+            Map<String, Object> element = input.read(Json.MAP_TYPE);
+            Duration duration = Duration.of(element);
+            if ("background".equals(element.get("type"))) {
+              background = duration;
+            } else if (background.passed && duration.passed) {
+              passed.put(element.get("line"), (background.nanos + duration.nanos) / 1_000_000);
+            }
+          }
+          input.endArray();
+          break;
+        default:
+          input.skipValue();
+      }
+    }
+    input.endObject();
+    if (uri != null) {
+      for (Map.Entry<Object, Long> scenario : passed.entrySet()) {
+        updated.put(keyOf(uri, scenario.getKey()), scenario.getValue());
+      }
+    }
+  }
+
+  /**
+   * Takes the durations in and saves the history. The file is read again under the lock, so the
+   * durations saved by other shards since the load are kept, and replaced atomically.
+   */
+  private void save(Map<String, Long> updated, String timestampKey, String timestamp)
+      throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path lockFile = Paths.get(file + ".lock");
+    try (FileChannel lock =
+            FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock ignored = lock.lock()) {
+      durations.clear();
+      durations.putAll(read(file));
+      updated.forEach(
+          (key, millis) -> {
+            long previous = estimate(key);
+            long estimate =
+                previous < 0
+                    ? millis
+                    : Math.round(LATEST_WEIGHT * millis + (1 - LATEST_WEIGHT) * previous);
+            durations.setProperty(key, String.valueOf(estimate));
+          });
+      durations.setProperty(timestampKey, timestamp);
+      Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temporary, UTF_8)) {
+        durations.store(writer, "Scenario durations in milliseconds");
+      }
+      Files.move(
+          temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /** Total duration of the steps and hooks of a report element and whether they all passed. */
+  private static final class Duration {
+
+    private long nanos;
+    private boolean passed = true;
+
+    @SuppressWarnings("unchecked")
+    private static Duration of(Map<String, Object> element) {
+      Duration duration = new Duration();
+      for (String steps : new String[] {"before", "steps", "after"}) {
+        Object list = element.get(steps);
+        if (list == null) {
+          continue;
+        }
+        for (Map<String, Object> step : (List<Map<String, Object>>) list) {
+          Map<String, Object> result = (Map<String, Object>) step.get("result");
+          Object nanos = result.get("duration");
+          if (nanos instanceof Number) {
+            duration.nanos += ((Number) nanos).longValue();
+          }
+          duration.passed &= "passed".equals(result.get("status"));
+        }
+      }
+      return duration;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.cucumber.testng.PickleWrapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Orders the scenarios longest first by their durations in the previous runs, so a long scenario
+ * does not start last and stretch the run. Scenarios without history are estimated by the mean of
+ * the known ones. The number of workers is {@code scenario_threads} if provided, otherwise one per
+ * core while the available memory fits {@code memory_per_browser_mb} (500 MB by default) per
+ * browser, or {@code memory_per_context_mb} (100 MB by default) per scenario when the scenarios
+ * share Chrome processes with {@code browser_contexts}. With {@code shard_count} only the
+ * scenarios of the {@link Shard} of this process are run. The predicted and the actual makespan
+ * are written to {@code schedule.json} in the reports directory of the shard at the end of the
+ * run.
+ */
+final class ScenarioScheduler {
+
+  private static final Logger log = LoggerFactory.getLogger(ScenarioScheduler.class);
+  private static final Path REPORT = Shard.REPORTS.resolve("schedule.json");
+  private static final Path MEMINFO = Paths.get("/proc/meminfo");
+  private static final int THREADS = Integer.getInteger("scenario_threads", 0);
+  private static final long MEMORY_PER_WORKER_MB =
+      Integer.getInteger("browser_contexts", 0) > 0
+          ? Long.getLong("memory_per_context_mb", 100)
+          : Long.getLong("memory_per_browser_mb", 500);
+
+  private final ScenarioHistory history = ScenarioHistory.load();
+  private final Map<String, Object> report = new LinkedHashMap<>();
+  private final AtomicLong lastFinishedAt = new AtomicLong();
+  private long startedAt;
+
+  /** Returns the scenarios ordered longest first and sizes the workers for them. */
+  Object[][] schedule(Object[][] scenarios) {
+    List<Scheduled> scheduled = new ArrayList<>();
+    long known = 0;
+    long knownTotal = 0;
+    for (Object[] scenario : scenarios) {
+      String key = ScenarioHistory.keyOf(((PickleWrapper) scenario[0]).getPickle());
+      long estimate = history.estimate(key);
+      if (estimate >= 0) {
+        known++;
+        knownTotal += estimate;
+      }
+      scheduled.add(new Scheduled(key, estimate, scenario));
+    }
+    long unknownEstimate = known == 0 ? 0 : knownTotal / known;
+    scheduled.forEach(s -> s.estimate = s.estimate < 0 ? unknownEstimate : s.estimate);
+    // Stable sort, the scenarios without any history keep the feature file order
+    scheduled.sort(Comparator.comparingLong((Scheduled s) -> s.estimate).reversed());
+    scheduled = Shard.select(scheduled, s -> s.key, ScenarioHistory.shared()::estimate);
+
+    int workers = workers(scheduled.size());
+    long predicted = predictMakespan(scheduled, workers);
+    List<Map<String, Object>> order = new ArrayList<>();
+    for (Scheduled s : scheduled) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("scenario", s.key);
+      entry.put("estimate_ms", s.estimate);
+      order.add(entry);
+    }
+    report.put("shard_index", Shard.INDEX);
+    report.put("shard_count", Shard.COUNT);
+    report.put("workers", workers);
+    report.put("scenarios", scheduled.size());
+    report.put("scenarios_with_history", known);
+    report.put("predicted_makespan_ms", predicted);
+    report.put("order", order);
+    log.info(
+        "Scheduled {} of {} scenario(s) longest first on {} worker(s) of shard {}/{}, "
+            + "predicted makespan {} ms",
+        scheduled.size(),
+        scenarios.length,
+        workers,
+        Shard.INDEX,
+        Shard.COUNT,
+        predicted);
+    startedAt = System.currentTimeMillis();
+    return scheduled.stream().map(s -> s.scenario).toArray(Object[][]::new);
+  }
+
+  int getWorkers() {
+    return (Integer) report.getOrDefault("workers", 1);
+  }
+
+  /** Records the end of a scheduled scenario, the last one ends the makespan. */
+  void scenarioFinished() {
+    lastFinishedAt.accumulateAndGet(System.currentTimeMillis(), Math::max);
+  }
+
+  /**
+   * Writes the predicted and the actual makespan of the scheduled scenarios. The makespan ends with
+   * the last scheduled scenario, the reruns after the main pass are not part of it.
+   */
+  void finish() {
+    if (startedAt == 0) {
+      return;
+    }
+    long actual = Math.max(0, lastFinishedAt.get() - startedAt);
+    startedAt = 0;
+    report.put("actual_makespan_ms", actual);
+    log.info(
+        "Scenarios makespan {} ms, predicted {} ms", actual, report.get("predicted_makespan_ms"));
+    try {
+      Files.createDirectories(REPORT.getParent());
+      Files.write(REPORT, new Json().toJson(report).getBytes(UTF_8));
+    } catch (IOException e) {
+      log.warn("Failed to write schedule report to {}: {}", REPORT, e.getMessage());
+    }
+  }
+
+  private static int workers(int scenarios) {
+    if (THREADS > 0) {
+      return THREADS;
+    }
+    int cores = Runtime.getRuntime().availableProcessors();
+    long availableMb = availableMemoryMb();
+    int byMemory = (int) Math.max(1, availableMb / MEMORY_PER_WORKER_MB);
+    log.info(
+        "{} core(s), {} MB available memory, {} MB per worker",
+        cores,
+        availableMb,
+        MEMORY_PER_WORKER_MB);
+    return Math.max(1, Math.min(Math.min(cores, byMemory), scenarios));
+  }
+
+  /** Simulates the workers taking the next scenario as soon as they are free. */
+  private static long predictMakespan(List<Scheduled> scheduled, int workers) {
+    PriorityQueue<Long> loads = new PriorityQueue<>();
+    for (int i = 0; i < workers; i++) {
+      loads.add(0L);
+    }
+    long makespan = 0;
+    for (Scheduled s : scheduled) {
+      long load = loads.poll() + s.estimate;
+      makespan = Math.max(makespan, load);
+      loads.add(load);
+    }
+    return makespan;
+  }
+
+  /** Returns the memory available for new processes, unlimited if it is unknown. */
+  private static long availableMemoryMb() {
+    try {
+      // Unlike the free memory, the available one counts the reclaimable page cache in
+      for (String line : Files.readAllLines(MEMINFO, UTF_8)) {
+        if (line.startsWith("MemAvailable:")) {
+          return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // No /proc on this system
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private static final class Scheduled {
+
+    private final String key;
+    private final Object[] scenario;
+    private long estimate;
+
+    private Scheduled(String key, long estimate, Object[] scenario) {
+      this.key = key;
+      this.estimate = estimate;
+      this.scenario = scenario;
+    }
+  }
+}
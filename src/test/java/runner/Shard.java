@@ -0,0 +1,111 @@
+package runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Shard of the scenarios run by this process, selected by the {@code shard_index} (from 0) and
+ * {@code shard_count} flags. Every shard splits all the scenarios the same way: the scenarios of
+ * the {@linkplain ScenarioHistory#shared() shared history} are dealt longest first, ties by their
+ * key, to the shard with the least estimated duration so far, the scenarios without history go to
+ * the shard given by the CRC-32 of their key. So the shards are disjoint, cover all the scenarios
+ * and are balanced on any node, whatever local scenario history the node has. The reports of a
+ * shard are written to {@code target/cucumber-reports/shard-<index>} to be combined by {@link
+ * ReportMerger}.
+ */
+final class Shard {
+
+  static final Path ROOT = Paths.get("target", "cucumber-reports");
+  static final int INDEX = Integer.getInteger("shard_index", 0);
+  static final int COUNT = Integer.getInteger("shard_count", 1);
+  static final Path REPORTS = isEnabled() ? ROOT.resolve("shard-" + INDEX) : ROOT;
+
+  static boolean isEnabled() {
+    return COUNT > 1;
+  }
+
+  /** Returns the Cucumber report plugins writing to the directory of this shard. */
+  static String plugins() {
+    return String.join(
+        ",",
+        "report.StreamingReportPlugin:" + REPORTS,
+        "rerun:" + REPORTS.resolve("rerun-reports/rerun.txt"),
+        "metrics.LatencyPlugin:" + REPORTS.resolve("json-reports/WebDriverLatency.json"),
+        "metrics.PerformancePlugin",
+        "report.ScenarioLogPlugin");
+  }
+
+  /** Returns the items assigned to this shard by their scenario keys, keeping their order. */
+  static <T> List<T> select(
+      List<T> ordered, Function<T, String> scenarioKey, ToLongFunction<String> estimate) {
+    if (!isEnabled()) {
+      return ordered;
+    }
+    if (INDEX < 0 || INDEX >= COUNT) {
+      throw new IllegalArgumentException(
+          "shard_index " + INDEX + " is out of the range of shard_count " + COUNT);
+    }
+    List<String> keys = new ArrayList<>();
+    ordered.forEach(item -> keys.add(scenarioKey.apply(item)));
+    Map<String, Integer> shards = assign(keys, estimate, COUNT);
+    List<T> selected = new ArrayList<>();
+    for (T item : ordered) {
+      if (shards.get(scenarioKey.apply(item)) == INDEX) {
+        selected.add(item);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Returns the shard of every scenario key. The split depends only on the keys and on their
+   * estimated durations, -1 for the scenarios without history, not on the order of the keys.
+   */
+  static Map<String, Integer> assign(
+      Collection<String> scenarioKeys, ToLongFunction<String> estimate, int count) {
+    Map<String, Integer> shards = new HashMap<>();
+    List<String> known = new ArrayList<>();
+    for (String key : new TreeSet<>(scenarioKeys)) {
+      if (estimate.applyAsLong(key) >= 0) {
+        known.add(key);
+      } else {
+        shards.put(key, shardOf(key, count));
+      }
+    }
+    // Stable sort of the sorted keys, the ties keep the order of their keys
+    known.sort(Comparator.comparingLong(estimate::applyAsLong).reversed());
+    long[] loads = new long[count];
+    for (String key : known) {
+      int least = 0;
+      for (int shard = 1; shard < count; shard++) {
+        if (loads[shard] < loads[least]) {
+          least = shard;
+        }
+      }
+      loads[least] += estimate.applyAsLong(key);
+      shards.put(key, least);
+    }
+    return shards;
+  }
+
+  /** Returns the shard of the scenario, the same on every JVM and spread better than hashCode. */
+  private static int shardOf(String scenarioKey, int count) {
+    CRC32 crc = new CRC32();
+    crc.update(scenarioKey.getBytes(UTF_8));
+    return (int) (crc.getValue() % count);
+  }
+
+  private Shard() {}
+}
@@ -0,0 +1,68 @@
+package runner;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.testng.annotations.Test;
+
+/** Split of the scenarios into shards by a fixed table of durations. */
+public class ShardTest {
+
+  private static final int COUNT = 3;
+
+  private final Map<String, Long> durations = new HashMap<>();
+
+  public ShardTest() {
+    long[] millis = {90_000, 75_000, 60_000, 60_000, 45_000, 30_000, 20_000, 20_000, 10_000, 5_000};
+    for (int i = 0; i < millis.length; i++) {
+      durations.put("Feature" + i + ".feature:" + (i + 3), millis[i]);
+    }
+  }
+
+  private long estimate(String key) {
+    return durations.getOrDefault(key, -1L);
+  }
+
+  @Test
+  public void everyScenarioIsInExactlyOneShard() {
+    List<String> keys = new ArrayList<>(durations.keySet());
+    keys.add("Unknown.feature:7");
+    keys.add("Unknown.feature:12");
+    Map<String, Integer> shards = Shard.assign(keys, this::estimate, COUNT);
+
+    assertEquals(shards.keySet(), new HashSet<>(keys));
+    shards.values().forEach(shard -> assertTrue(shard >= 0 && shard < COUNT, "shard " + shard));
+  }
+
+  @Test
+  public void shardsAreBalanced() {
+    Map<String, Integer> shards = Shard.assign(durations.keySet(), this::estimate, COUNT);
+
+    long[] loads = new long[COUNT];
+    shards.forEach((key, shard) -> loads[shard] += durations.get(key));
+    long max = Long.MIN_VALUE;
+    long min = Long.MAX_VALUE;
+    for (long load : loads) {
+      max = Math.max(max, load);
+      min = Math.min(min, load);
+    }
+    // Dealing to the least loaded shard keeps the loads within one scenario of each other
+    assertTrue(max - min <= Collections.max(durations.values()), "loads " + max + " - " + min);
+    assertEquals(max, 140_000);
+  }
+
+  @Test
+  public void splitDoesNotDependOnTheScenarioOrder() {
+    List<String> keys = new ArrayList<>(durations.keySet());
+    Map<String, Integer> expected = Shard.assign(keys, this::estimate, COUNT);
+    Collections.reverse(keys);
+
+    assertEquals(Shard.assign(keys, this::estimate, COUNT), expected);
+  }
+}
@@ -0,0 +1,116 @@
+package steps;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import browser.Browser;
+import io.cucumber.java.Scenario;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the last {@code recorder_frames} frames of a scenario in memory: screenshot, DOM snapshot
+ * and browser console log. The frames are attached to the scenario only if it fails, passed
+ * scenarios attach nothing but the recorder statistics line in the log. The oldest frames are
+ * dropped once the frames take more than {@code recorder_max_kb} (20 MB by default).
+ */
+final class FlightRecorder {
+
+  private static final Logger log = LoggerFactory.getLogger(FlightRecorder.class);
+  private static final int FRAMES = Integer.getInteger("recorder_frames", 0);
+  private static final long MAX_BYTES = Long.getLong("recorder_max_kb", 20 * 1024) * 1024;
+  private static final ThreadLocal<FlightRecorder> CURRENT = new ThreadLocal<>();
+
+  private final Scenario scenario;
+  private final Deque<Frame> frames = new ArrayDeque<>();
+  private long bytes;
+  private long peakBytes;
+  private int recorded;
+
+  private FlightRecorder(Scenario scenario) {
+    this.scenario = scenario;
+  }
+
+  static boolean isEnabled() {
+    return FRAMES > 0;
+  }
+
+  /** Starts recording of the scenario on the current thread. */
+  static void start(Scenario scenario) {
+    CURRENT.set(new FlightRecorder(scenario));
+  }
+
+  /** Returns the recorder of the scenario running on the current thread. */
+  static FlightRecorder current() {
+    return CURRENT.get();
+  }
+
+  /** Stops recording and releases the recorded frames. */
+  static void stop() {
+    CURRENT.remove();
+  }
+
+  /** Records a frame with the current browser state. */
+  void record(String name) {
+    if (!Browser.isStarted()) {
+      return;
+    }
+    Object dom = Browser.execute("return document.documentElement.outerHTML");
+    Frame frame =
+        new Frame(
+            ++recorded + ". " + name,
+            Browser.takeScreenshot(),
+            dom == null ? "" : dom.toString(),
+            Browser.consoleLog());
+    frames.addLast(frame);
+    bytes += frame.size;
+    peakBytes = Math.max(peakBytes, bytes);
+    while (frames.size() > FRAMES || (bytes > MAX_BYTES && frames.size() > 1)) {
+      bytes -= frames.removeFirst().size;
+    }
+  }
+
+  /** Attaches the recorded frames to the scenario, oldest first. */
+  void flush() {
+    for (Frame frame : frames) {
+      if (frame.screenshot != null) {
+        scenario.attach(frame.screenshot, "image/png", frame.name + " screenshot");
+      }
+      scenario.attach(frame.dom, "text/plain", frame.name + " DOM");
+      if (!frame.console.isEmpty()) {
+        scenario.attach(frame.console, "text/plain", frame.name + " console");
+      }
+    }
+    scenario.attach(statistics(), "text/plain", "Flight recorder");
+  }
+
+  String statistics() {
+    return String.format(
+        "%d of %d frames kept, %d KB kept, %d KB peak, %d KB limit",
+        frames.size(), recorded, bytes / 1024, peakBytes / 1024, MAX_BYTES / 1024);
+  }
+
+  /** Logs the memory taken by the recorder of the scenario. */
+  void report() {
+    log.info("Flight recorder of '{}': {}", scenario.getName(), statistics());
+  }
+
+  private static final class Frame {
+
+    private final String name;
+    private final byte[] screenshot;
+    private final String dom;
+    private final String console;
+    private final long size;
+
+    private Frame(String name, byte[] screenshot, String dom, String console) {
+      this.name = name;
+      this.screenshot = screenshot;
+      this.dom = dom;
+      this.console = console;
+      long size = dom.getBytes(UTF_8).length + console.getBytes(UTF_8).length;
+      this.size = screenshot == null ? size : size + screenshot.length;
+    }
+  }
+}
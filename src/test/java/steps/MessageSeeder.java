@@ -0,0 +1,95 @@
+package steps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import metrics.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pages.ClientPage;
+
+/**
+ * Seeds the current channel with numbered messages in batches of {@code seed_batch_size} (100 by
+ * default) through the {@code seed_backend}: {@code ui} (the default) pastes the messages into the
+ * message input, {@code api} posts them to the web API of the workspace as served by the Slack
+ * stub and reloads the chat once at the end. The duration of every batch is recorded as {@code
+ * seed:<backend>} latency.
+ */
+final class MessageSeeder {
+
+  private static final Logger log = LoggerFactory.getLogger(MessageSeeder.class);
+  private static final int BATCH_SIZE = Integer.getInteger("seed_batch_size", 100);
+  private static final Backend BACKEND =
+      Backend.valueOf(System.getProperty("seed_backend", "ui").toUpperCase(Locale.ROOT));
+
+  private final String name = "seed:" + BACKEND.name().toLowerCase(Locale.ROOT);
+  private final String run = UUID.randomUUID().toString().substring(0, 8);
+  private String lastMessage;
+  private String summary;
+
+  /** Seeds the messages and sums up the seeding and its throughput. */
+  void seed(ClientPage clientPage, int count) {
+    long start = System.nanoTime();
+    String last = null;
+    for (int first = 1; first <= count; first += BATCH_SIZE) {
+      List<String> batch = new ArrayList<>();
+      for (int i = first; i < first + BATCH_SIZE && i <= count; i++) {
+        batch.add(String.format("Seed message %d of %d (%s)", i, count, run));
+      }
+      long batchStart = System.nanoTime();
+      BACKEND.send(clientPage, batch);
+      LatencyRecorder.record(name, batchStart);
+      last = batch.get(batch.size() - 1);
+    }
+    if (last != null) {
+      BACKEND.finish(clientPage, last);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    lastMessage = last;
+    summary =
+        String.format(
+            Locale.ROOT,
+            "Seeded %d message(s) in %.1f s, %.1f messages/s, %s backend in batches of %d",
+            count,
+            seconds,
+            count / Math.max(seconds, 1e-3),
+            BACKEND.name().toLowerCase(Locale.ROOT),
+            BATCH_SIZE);
+    log.info(summary);
+  }
+
+  String getLastMessage() {
+    return lastMessage;
+  }
+
+  String getSummary() {
+    return summary;
+  }
+
+  private enum Backend {
+    UI {
+      @Override
+      void send(ClientPage clientPage, List<String> batch) {
+        clientPage.pasteMessages(batch);
+      }
+    },
+
+    API {
+      @Override
+      void send(ClientPage clientPage, List<String> batch) {
+        clientPage.postMessages(batch);
+      }
+
+      @Override
+      void finish(ClientPage clientPage, String lastMessage) {
+        clientPage.reloadMessages(lastMessage);
+      }
+    };
+
+    abstract void send(ClientPage clientPage, List<String> batch);
+
+    /** Makes sure the seeded messages are displayed. */
+    void finish(ClientPage clientPage, String lastMessage) {}
+  }
+}
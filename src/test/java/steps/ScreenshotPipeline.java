@@ -0,0 +1,181 @@
+package steps;
+
+import com.google.common.hash.Hashing;
+import io.cucumber.java.Scenario;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes screenshots of a scenario in background. The step thread only hands over the raw PNG
+ * bytes, then a shared bounded executor drops frames identical to already attached ones, downscales
+ * and re-encodes the rest. The step thread attaches them to the scenario in the order they were
+ * taken at the end of the step, so every screenshot is reported within the step that took it.
+ * When the executor queue is full the step thread waits for a free slot.
+ *
+ * <p>Flags: {@code screenshot_format} (jpg by default), {@code screenshot_quality} (0.8), {@code
+ * screenshot_scale} (0.75), {@code screenshot_threads} (2), {@code screenshot_queue_size} (32).
+ */
+final class ScreenshotPipeline {
+
+  private static final Logger log = LoggerFactory.getLogger(ScreenshotPipeline.class);
+  private static final String FORMAT = System.getProperty("screenshot_format", "jpg");
+  private static final float QUALITY =
+      Float.parseFloat(System.getProperty("screenshot_quality", "0.8"));
+  private static final double SCALE =
+      Double.parseDouble(System.getProperty("screenshot_scale", "0.75"));
+  private static final int THREADS = Integer.getInteger("screenshot_threads", 2);
+  private static final int QUEUE_SIZE = Integer.getInteger("screenshot_queue_size", 32);
+  private static final long DRAIN_TIMEOUT_IN_SECONDS = 60;
+
+  private static final Semaphore SLOTS = new Semaphore(QUEUE_SIZE);
+  private static final ExecutorService EXECUTOR = newExecutor();
+
+  private final Scenario scenario;
+  private final Set<String> hashes = new HashSet<>();
+  private final List<Pending> pending = new ArrayList<>();
+  // The frames are processed one after another, identical ones are dropped in the order taken
+  private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+
+  ScreenshotPipeline(Scenario scenario) {
+    this.scenario = scenario;
+  }
+
+  /** Queues a raw PNG screenshot to be attached to the scenario by {@link #attachPending()}. */
+  void submit(byte[] png, String name) {
+    if (png == null) {
+      return;
+    }
+    try {
+      SLOTS.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    CompletableFuture<byte[]> image = tail.thenApplyAsync(ignored -> process(png), EXECUTOR);
+    pending.add(new Pending(image, name));
+    tail = image;
+  }
+
+  /**
+   * Waits for the queued screenshots and attaches them to the running step. The screenshots not
+   * encoded in time are dropped, they are never attached after the step.
+   */
+  void attachPending() {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_IN_SECONDS);
+    for (Pending screenshot : pending) {
+      try {
+        byte[] image =
+            screenshot.image.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (image != null) {
+          scenario.attach(image, "image/" + mimeSubtype(), screenshot.name);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        log.warn("Failed to attach screenshot of '{}': {}", scenario.getName(), e.getMessage());
+      }
+    }
+    pending.clear();
+  }
+
+  /** Returns the encoded screenshot, or null if it is identical to an attached one. */
+  private byte[] process(byte[] png) {
+    try {
+      String hash = Hashing.murmur3_128().hashBytes(png).toString();
+      if (!hashes.add(hash)) {
+        log.debug("Skipping screenshot identical to an attached one");
+        return null;
+      }
+      return encode(png);
+    } catch (Exception e) {
+      log.warn("Failed to process screenshot: {}", e.getMessage());
+      return null;
+    } finally {
+      SLOTS.release();
+    }
+  }
+
+  private static byte[] encode(byte[] png) throws IOException {
+    if (SCALE == 1.0 && "png".equalsIgnoreCase(FORMAT)) {
+      return png;
+    }
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+    int width = Math.max(1, (int) Math.round(image.getWidth() * SCALE));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * SCALE));
+    BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = scaled.createGraphics();
+    graphics.setRenderingHint(
+        RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    graphics.drawImage(image, 0, 0, width, height, null);
+    graphics.dispose();
+
+    ImageWriter writer = ImageIO.getImageWritersByFormatName(FORMAT).next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    if (param.canWriteCompressed()) {
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(QUALITY);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+      writer.setOutput(stream);
+      writer.write(null, new IIOImage(scaled, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return out.toByteArray();
+  }
+
+  private static String mimeSubtype() {
+    return "jpg".equalsIgnoreCase(FORMAT) ? "jpeg" : FORMAT.toLowerCase();
+  }
+
+  private static ExecutorService newExecutor() {
+    AtomicInteger counter = new AtomicInteger();
+    return new ThreadPoolExecutor(
+        THREADS,
+        THREADS,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_SIZE),
+        r -> {
+          Thread thread = new Thread(r, "screenshot-pipeline-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /** Screenshot being encoded with the name it is attached by. */
+  private static final class Pending {
+
+    private final CompletableFuture<byte[]> image;
+    private final String name;
+
+    private Pending(CompletableFuture<byte[]> image, String name) {
+      this.image = image;
+      this.name = name;
+    }
+  }
+}
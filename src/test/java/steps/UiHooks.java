@@ -1,29 +1,69 @@
 package steps;
 
 import browser.Browser;
+import browser.PerformanceCapture;
 import io.cucumber.java.After;
+import io.cucumber.java.AfterStep;
 import io.cucumber.java.Before;
 import io.cucumber.java.Scenario;
+import org.openqa.selenium.json.Json;
+import pages.PageProvider;
+import report.ScenarioLog;
+import runner.RerunStage;
 
 /**
  * Hooks useful for UI tests that use browser. This class starts a browser before to execute any UI
  * test and closes the browser after test is done (no mater passed or failed). Before to close the
- * browser it takes a screenshot.
+ * browser it takes a screenshot. With {@code browser_pool_size} flag the browser is taken from and
+ * returned to the warm session pool instead. With {@code recorder_frames} flag the screenshots and
+ * DOM snapshots of the last steps are attached only if the scenario fails. A rerun of a failed
+ * scenario is marked by a "Rerun" attachment. The log of a failed scenario is attached to it.
+ * With {@code perf_capture} flag the client side performance of the steps is attached as JSON.
  */
 public class UiHooks {
 
   private Scenario scenario;
 
+  @Before(order = 0)
+  public void startScenarioLog(Scenario scenario) {
+    String file = scenario.getUri().toString();
+    ScenarioLog.start(file.substring(file.lastIndexOf('/') + 1) + ":" + scenario.getLine());
+  }
+
   @Before
   public void startBrowser(Scenario scenario) {
     this.scenario = scenario;
+    String rerun = RerunStage.currentAttempt();
+    if (rerun != null) {
+      scenario.attach(rerun, "text/plain", "Rerun");
+    }
+    if (FlightRecorder.isEnabled()) {
+      FlightRecorder.start(scenario);
+    }
+    PerformanceCapture.start();
     Browser.start();
     Browser.resize();
   }
 
+  @AfterStep
+  public void dropCachedPageOnFailure(Scenario scenario) {
+    // A failed step may leave the cached page object with stale elements
+    if (scenario.isFailed()) {
+      PageProvider.invalidate();
+    }
+  }
+
   @After
   public void closeBrowser() {
-    if (Browser.isStarted()) {
+    if (FlightRecorder.isEnabled()) {
+      FlightRecorder recorder = FlightRecorder.current();
+      recorder.record("After scenario");
+      if (scenario.isFailed()) {
+        recorder.flush();
+      }
+      recorder.report();
+      FlightRecorder.stop();
+    } else if (Browser.isStarted()) {
       try {
         byte[] screenshot = Browser.takeScreenshot();
         scenario.attach(screenshot, "image/png", "Screenshot");
@@ -31,6 +71,24 @@ public class UiHooks {
         e.printStackTrace();
       }
     }
+    PageProvider.invalidate();
     Browser.quit();
   }
+
+  @After(order = 1)
+  public void attachPerformance(Scenario scenario) {
+    PerformanceCapture capture = PerformanceCapture.current();
+    if (PerformanceCapture.isEnabled() && !capture.getSteps().isEmpty()) {
+      scenario.attach(new Json().toJson(capture.getSteps()), "application/json", "Performance");
+    }
+    PerformanceCapture.stop();
+  }
+
+  @After(order = 0)
+  public void finishScenarioLog(Scenario scenario) {
+    if (scenario.isFailed()) {
+      scenario.attach(ScenarioLog.contents(), "text/plain", "Log");
+    }
+    ScenarioLog.finish();
+  }
 }
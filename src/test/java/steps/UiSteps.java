@@ -4,15 +4,23 @@ import static org.openqa.selenium.support.ui.ExpectedConditions.urlToBe;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import browser.AuthStateCache;
 import browser.Browser;
+import browser.NetworkProfile;
+import browser.PerformanceCapture;
 import com.google.common.base.Ascii;
+import io.cucumber.java.After;
+import io.cucumber.java.AfterStep;
 import io.cucumber.java.Before;
 import io.cucumber.java.Scenario;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import org.openqa.selenium.TimeoutException;
 import pages.ClientPage;
 import pages.LoginPage;
 import pages.PageProvider;
@@ -23,12 +31,33 @@ import pages.PageProvider;
  */
 public class UiSteps {
 
+  private static final long AUTH_RESTORE_TIMEOUT_IN_SECONDS = 15;
+
   private Scenario scenario;
+  private ScreenshotPipeline screenshots;
   private String lastMessage;
 
   @Before
   public void initScenario(Scenario scenario) {
     this.scenario = scenario;
+    this.screenshots = new ScreenshotPipeline(scenario);
+  }
+
+  @AfterStep
+  public void attachStepScreenshots() {
+    screenshots.attachPending();
+  }
+
+  @After
+  public void attachPendingScreenshots() {
+    screenshots.attachPending();
+  }
+
+  @Given("network profile {string}")
+  public void applyNetworkProfile(String profileName) {
+    NetworkProfile profile = NetworkProfile.named(profileName);
+    profile.apply();
+    log("Network profile: " + profile.getName());
   }
 
   @Given("I am on the page with URL provided by flag {string}")
@@ -95,16 +124,32 @@ public class UiSteps {
     signInAtPageWithUrl(workspaceUrl);
   }
 
+  /**
+   * Signs in with the credentials provided by flags. The authenticated state captured on the first
+   * sign in of the worker is restored on the next ones, the login form is used only if there is no
+   * valid cached state. The "Sign In" feature drives the login form step by step instead.
+   */
   @When("I sign in the workspace at URL {string}")
   public void signInAtPageWithUrl(String url) {
     log("Sign in workspace at " + url);
+    String user = System.getProperty("user_email", "");
+    if (AuthStateCache.restore(url, user)) {
+      if (isClientPageOpened(AUTH_RESTORE_TIMEOUT_IN_SECONDS)) {
+        log("Restored cached authentication state");
+        takeScreenshot();
+        return;
+      }
+      log("Cached authentication state is not valid anymore, signing in with the login form");
+      AuthStateCache.invalidate(url, user);
+    }
     openPage(url);
     fillInFieldWithFlagValue("Email address", "user_email");
     fillInFieldWithFlagValue("Password", "user_pwd");
     clickSignInButton();
-    Browser.waiting()
+    Browser.waiting("client_page")
         .withMessage("Client page is not found")
         .until(condition -> PageProvider.getCurrentPage() instanceof ClientPage);
+    AuthStateCache.capture(url, user);
     takeScreenshot();
   }
 
@@ -115,6 +160,21 @@ public class UiSteps {
     takeScreenshot();
   }
 
+  /**
+   * Seeds the channel with numbered messages through a faster path than the keystrokes, the last
+   * seeded message becomes the last message.
+   */
+  @Given("channel {string} has {int} messages")
+  public void seedChannel(String channelName, int count) {
+    ClientPage clientPage = (ClientPage) PageProvider.getCurrentPage();
+    clientPage.selectSidebarItem(channelName);
+    MessageSeeder seeder = new MessageSeeder();
+    seeder.seed(clientPage, count);
+    lastMessage = seeder.getLastMessage();
+    log(seeder.getSummary());
+    takeScreenshot();
+  }
+
   @When("I send my local time")
   public void sendMessageWithMyLocalTime() {
     sendMessage("My local time is " + Calendar.getInstance().getTime());
@@ -205,11 +265,63 @@ public class UiSteps {
     takeScreenshot();
   }
 
+  @Then("the last step took less than {int} ms")
+  public void lastStepTookLessThan(int budgetInMillis) {
+    assertBudget(lastStep(), "duration_ms", budgetInMillis);
+  }
+
+  @Then("the last step blocked the main thread for less than {int} ms")
+  public void lastStepBlockedMainThreadForLessThan(int budgetInMillis) {
+    Map<String, Object> step = lastStep();
+    assertTrue(
+        step.containsKey("long_task_ms"),
+        "Long tasks are not captured, run with -Dperf_capture=true: " + step.get("step"));
+    assertBudget(step, "long_task_ms", budgetInMillis);
+  }
+
+  /** Returns the last step run before the budget steps, they can follow each other. */
+  private Map<String, Object> lastStep() {
+    PerformanceCapture capture = PerformanceCapture.current();
+    List<Map<String, Object>> steps = Collections.emptyList();
+    if (capture != null) {
+      capture.markBudgetStep();
+      steps = capture.getSteps();
+    }
+    for (int i = steps.size() - 1; i >= 0; i--) {
+      if (!PerformanceCapture.isBudgetStep(steps.get(i))) {
+        return steps.get(i);
+      }
+    }
+    throw new AssertionError("No step has been run before the budget step");
+  }
+
+  private void assertBudget(Map<String, Object> step, String metric, int budgetInMillis) {
+    long value = ((Number) step.get(metric)).longValue();
+    String measure =
+        String.format(
+            "[%s] %s %d ms, budget %d ms", step.get("step"), metric, value, budgetInMillis);
+    log(measure);
+    assertTrue(value < budgetInMillis, "Step is over its budget: " + measure);
+  }
+
+  private boolean isClientPageOpened(long timeoutInSeconds) {
+    try {
+      return Browser.waiting(timeoutInSeconds)
+          .until(condition -> PageProvider.getCurrentPage() instanceof ClientPage);
+    } catch (TimeoutException e) {
+      return false;
+    }
+  }
+
   private void log(String message) {
     scenario.attach(message, "text/plain", "Details");
   }
 
   private void takeScreenshot() {
-    scenario.attach(Browser.takeScreenshot(), "image/png", "Screenshot");
+    if (FlightRecorder.isEnabled()) {
+      FlightRecorder.current().record("Step");
+    } else {
+      screenshots.submit(Browser.takeScreenshot(), "Screenshot");
+    }
   }
 }
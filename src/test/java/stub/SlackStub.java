@@ -0,0 +1,334 @@
+package stub;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded stand-in of the Slack workspace for offline runs, enabled by {@code -Dslack_stub=true}.
+ * It serves a login page and a client page with the same element ids and {@code data-qa} hooks the
+ * page objects use, and keeps messages, saved items and search in memory per signed in session.
+ * The {@code workspace_url}, {@code user_email} and {@code user_pwd} flags point to the stub unless
+ * they are provided. Every response is delayed by {@code slack_stub_latency_ms} plus a random
+ * {@code slack_stub_latency_jitter_ms}, messages are searchable after {@code
+ * slack_stub_index_delay_ms} (1 second by default). {@code slack_stub_channels} adds as many
+ * channels to the virtualised sidebar, sorted before the default ones.
+ */
+public final class SlackStub {
+
+  private static final Logger log = LoggerFactory.getLogger(SlackStub.class);
+  private static final boolean ENABLED = Boolean.getBoolean("slack_stub");
+  private static final int PORT = Integer.getInteger("slack_stub_port", 0);
+  private static final long LATENCY_MS = Long.getLong("slack_stub_latency_ms", 0);
+  private static final long LATENCY_JITTER_MS = Long.getLong("slack_stub_latency_jitter_ms", 0);
+  private static final long INDEX_DELAY_MS = Long.getLong("slack_stub_index_delay_ms", 1000);
+  private static final String DEFAULT_EMAIL = "stub@example.com";
+  private static final String DEFAULT_PASSWORD = "stub-password";
+  private static final String SESSION_COOKIE = "d";
+  private static final String CLIENT_PATH = "/client/T0/";
+  private static final String HTML = "text/html; charset=utf-8";
+  private static final Json JSON = new Json();
+  private static final Map<String, String> RESOURCE_TYPES = new HashMap<>();
+  private static final Map<String, String> RESOURCES = new ConcurrentHashMap<>();
+  private static final Map<String, StubWorkspace> SESSIONS = new ConcurrentHashMap<>();
+
+  static {
+    RESOURCE_TYPES.put("client.css", "text/css; charset=utf-8");
+    RESOURCE_TYPES.put("client.js", "application/javascript; charset=utf-8");
+  }
+
+  private static HttpServer server;
+  private static ExecutorService executor;
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /** Starts the stub and points the workspace and credentials flags to it. */
+  public static synchronized void start() throws IOException {
+    if (server != null) {
+      return;
+    }
+    executor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+    server.createContext("/", SlackStub::handle);
+    server.setExecutor(executor);
+    server.start();
+
+    String url = "http://localhost:" + server.getAddress().getPort() + "/";
+    System.setProperty("workspace_url", url);
+    setPropertyIfAbsent("user_email", DEFAULT_EMAIL);
+    setPropertyIfAbsent("user_pwd", DEFAULT_PASSWORD);
+    log.info(
+        "Slack stub started at {}, latency {} ms, jitter {} ms, search index delay {} ms",
+        url,
+        LATENCY_MS,
+        LATENCY_JITTER_MS,
+        INDEX_DELAY_MS);
+  }
+
+  public static synchronized void stop() {
+    if (server == null) {
+      return;
+    }
+    server.stop(0);
+    executor.shutdownNow();
+    log.info("Slack stub stopped, {} session(s) served", SESSIONS.size());
+    server = null;
+    SESSIONS.clear();
+  }
+
+  private static void setPropertyIfAbsent(String name, String value) {
+    if (System.getProperty(name, "").isEmpty()) {
+      System.setProperty(name, value);
+    }
+  }
+
+  private static void handle(HttpExchange exchange) {
+    try {
+      delay();
+      String path = exchange.getRequestURI().getPath();
+      if ("/".equals(path)) {
+        sendLoginPage(exchange, "");
+      } else if ("/signin".equals(path) && "POST".equals(exchange.getRequestMethod())) {
+        signIn(exchange);
+      } else if (path.startsWith("/stub/") && RESOURCE_TYPES.containsKey(path.substring(6))) {
+        String name = path.substring(6);
+        send(exchange, 200, RESOURCE_TYPES.get(name), resource(name));
+      } else if (path.startsWith(CLIENT_PATH)) {
+        sendClientPage(exchange, path.substring(CLIENT_PATH.length()));
+      } else if (path.startsWith("/api/")) {
+        handleApi(exchange, path.substring(5));
+      } else {
+        send(exchange, 404, HTML, "Not found");
+      }
+    } catch (Exception e) {
+      log.warn("Slack stub failed to handle {}", exchange.getRequestURI(), e);
+      try {
+        send(exchange, 500, HTML, String.valueOf(e.getMessage()));
+      } catch (IOException ignored) {
+        // The response has already been sent or the connection is closed
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static void delay() throws InterruptedException {
+    long jitter =
+        LATENCY_JITTER_MS > 0 ? ThreadLocalRandom.current().nextLong(LATENCY_JITTER_MS) : 0;
+    if (LATENCY_MS + jitter > 0) {
+      TimeUnit.MILLISECONDS.sleep(LATENCY_MS + jitter);
+    }
+  }
+
+  private static void sendLoginPage(HttpExchange exchange, String error) throws IOException {
+    send(exchange, 200, HTML, resource("login.html").replace("{{error}}", error));
+  }
+
+  private static void signIn(HttpExchange exchange) throws IOException {
+    Map<String, String> form = parseQuery(readBody(exchange));
+    if (!System.getProperty("user_email", "").equals(form.get("email"))
+        || !System.getProperty("user_pwd", "").equals(form.get("password"))) {
+      sendLoginPage(exchange, "Sorry, you entered an incorrect email address or password.");
+      return;
+    }
+    String token = UUID.randomUUID().toString();
+    SESSIONS.put(token, new StubWorkspace(INDEX_DELAY_MS));
+    exchange
+        .getResponseHeaders()
+        .add("Set-Cookie", SESSION_COOKIE + "=" + token + "; Path=/; HttpOnly");
+    redirect(exchange, CLIENT_PATH + StubWorkspace.channelId(0));
+  }
+
+  private static void sendClientPage(HttpExchange exchange, String channelId) throws IOException {
+    StubWorkspace workspace = workspaceOf(exchange);
+    if (workspace == null) {
+      redirect(exchange, "/");
+      return;
+    }
+    if (!StubWorkspace.isChannel(channelId)) {
+      send(exchange, 404, HTML, "Channel not found");
+      return;
+    }
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("workspace", StubWorkspace.NAME);
+    state.put("channels", StubWorkspace.channels());
+    state.put("channel", channelId);
+    state.put("messages", workspace.history(channelId));
+    // The JSON output escapes slashes, so a message text cannot end the inline script
+    String json = JSON.toJson(state);
+    send(exchange, 200, HTML, resource("client.html").replace("/*STATE*/null", json));
+  }
+
+  private static void handleApi(HttpExchange exchange, String method) throws IOException {
+    StubWorkspace workspace = workspaceOf(exchange);
+    if (workspace == null) {
+      sendJson(exchange, 401, error("not_authed"));
+      return;
+    }
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    Map<String, Object> body =
+        "POST".equals(exchange.getRequestMethod())
+            ? JSON.toType(readBody(exchange), Json.MAP_TYPE)
+            : Collections.emptyMap();
+    switch (method) {
+      case "conversations.history":
+        sendJson(exchange, 200, ok("messages", workspace.history(query.get("channel"))));
+        break;
+      case "chat.postMessage":
+        String channelId = String.valueOf(body.get("channel"));
+        if (!StubWorkspace.isChannel(channelId)) {
+          sendJson(exchange, 404, error("channel_not_found"));
+          return;
+        }
+        Object text = body.get("text");
+        sendJson(exchange, 200, ok("message", workspace.post(channelId, String.valueOf(text))));
+        break;
+      case "stars.add":
+      case "stars.remove":
+        Object id = body.get("id");
+        Map<String, Object> message =
+            id instanceof Number
+                ? workspace.setSaved(((Number) id).longValue(), "stars.add".equals(method))
+                : null;
+        if (message == null) {
+          sendJson(exchange, 404, error("message_not_found"));
+          return;
+        }
+        sendJson(exchange, 200, ok("message", message));
+        break;
+      case "stars.list":
+        sendJson(exchange, 200, ok("messages", workspace.saved()));
+        break;
+      case "search.messages":
+        String searchQuery = query.getOrDefault("query", "");
+        sendJson(exchange, 200, ok("messages", workspace.search(searchQuery)));
+        break;
+      default:
+        sendJson(exchange, 404, error("unknown_method"));
+    }
+  }
+
+  private static StubWorkspace workspaceOf(HttpExchange exchange) {
+    List<String> cookies = exchange.getRequestHeaders().get("Cookie");
+    if (cookies == null) {
+      return null;
+    }
+    for (String header : cookies) {
+      for (String cookie : header.split(";")) {
+        String[] pair = cookie.trim().split("=", 2);
+        if (pair.length == 2 && SESSION_COOKIE.equals(pair[0])) {
+          StubWorkspace workspace = SESSIONS.get(pair[1]);
+          if (workspace != null) {
+            return workspace;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static Map<String, Object> ok(String name, Object value) {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("ok", true);
+    response.put(name, value);
+    return response;
+  }
+
+  private static Map<String, Object> error(String error) {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("ok", false);
+    response.put("error", error);
+    return response;
+  }
+
+  private static Map<String, String> parseQuery(String query) throws IOException {
+    Map<String, String> values = new HashMap<>();
+    if (query == null || query.isEmpty()) {
+      return values;
+    }
+    for (String pair : query.split("&")) {
+      String[] nameAndValue = pair.split("=", 2);
+      values.put(
+          URLDecoder.decode(nameAndValue[0], "UTF-8"),
+          nameAndValue.length > 1 ? URLDecoder.decode(nameAndValue[1], "UTF-8") : "");
+    }
+    return values;
+  }
+
+  private static String readBody(HttpExchange exchange) throws IOException {
+    try (InputStream input = exchange.getRequestBody()) {
+      return read(input);
+    }
+  }
+
+  private static String read(InputStream input) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int read; (read = input.read(buffer)) != -1; ) {
+      content.write(buffer, 0, read);
+    }
+    return new String(content.toByteArray(), UTF_8);
+  }
+
+  private static String resource(String name) {
+    return RESOURCES.computeIfAbsent(
+        name,
+        n -> {
+          try (InputStream input = SlackStub.class.getResourceAsStream("/stub/" + n)) {
+            if (input == null) {
+              throw new IllegalStateException("Slack stub resource is not found: " + n);
+            }
+            return read(input);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  private static void redirect(HttpExchange exchange, String location) throws IOException {
+    exchange.getResponseHeaders().add("Location", location);
+    exchange.sendResponseHeaders(302, -1);
+  }
+
+  private static void sendJson(HttpExchange exchange, int status, Map<String, Object> response)
+      throws IOException {
+    send(exchange, status, "application/json; charset=utf-8", JSON.toJson(response));
+  }
+
+  private static void send(HttpExchange exchange, int status, String contentType, String content)
+      throws IOException {
+    byte[] bytes = content.getBytes(UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", contentType);
+    exchange.getResponseHeaders().add("Cache-Control", "no-store");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  private SlackStub() {}
+}
@@ -0,0 +1,122 @@
+package stub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory messages, saved items and search index of one signed in stub session. Messages become
+ * searchable only after the search indexing delay, like in the real workspace.
+ */
+final class StubWorkspace {
+
+  static final String NAME = "Slack";
+  static final List<String> CHANNELS = channelNames(Integer.getInteger("slack_stub_channels", 0));
+  private static final String STARRED_QUERY = "has:star";
+
+  private final List<Message> messages = new ArrayList<>();
+  private final long indexDelayInMillis;
+
+  StubWorkspace(long indexDelayInMillis) {
+    this.indexDelayInMillis = indexDelayInMillis;
+  }
+
+  /** Returns the sorted names of the channels, the given number of them added to the defaults. */
+  private static List<String> channelNames(int added) {
+    List<String> names = new ArrayList<>(Arrays.asList("general", "random"));
+    for (int i = 1; i <= added; i++) {
+      names.add(String.format("channel-%05d", i));
+    }
+    names.sort(null);
+    return Collections.unmodifiableList(names);
+  }
+
+  static String channelId(int index) {
+    return "C" + index;
+  }
+
+  static boolean isChannel(String channelId) {
+    return channelId.matches("C\\d+") && Integer.parseInt(channelId.substring(1)) < CHANNELS.size();
+  }
+
+  /** Returns the channels in the order of the sidebar as {@code id} and {@code name} pairs. */
+  static List<Map<String, Object>> channels() {
+    List<Map<String, Object>> channels = new ArrayList<>();
+    for (int i = 0; i < CHANNELS.size(); i++) {
+      Map<String, Object> channel = new LinkedHashMap<>();
+      channel.put("id", channelId(i));
+      channel.put("name", CHANNELS.get(i));
+      channels.add(channel);
+    }
+    return channels;
+  }
+
+  synchronized Map<String, Object> post(String channelId, String text) {
+    Message message = new Message(messages.size() + 1, channelId, text);
+    messages.add(message);
+    return message.toMap();
+  }
+
+  synchronized List<Map<String, Object>> history(String channelId) {
+    return select(message -> message.channelId.equals(channelId));
+  }
+
+  /** Saves or removes the message from the saved items, returns null if there is no message. */
+  synchronized Map<String, Object> setSaved(long id, boolean saved) {
+    if (id < 1 || id > messages.size()) {
+      return null;
+    }
+    Message message = messages.get((int) id - 1);
+    message.saved = saved;
+    return message.toMap();
+  }
+
+  synchronized List<Map<String, Object>> saved() {
+    return select(message -> message.saved);
+  }
+
+  /** Searches the indexed messages by text, {@code has:star} query returns the saved ones. */
+  synchronized List<Map<String, Object>> search(String query) {
+    long indexedBefore = System.currentTimeMillis() - indexDelayInMillis;
+    String text = query.trim().toLowerCase(Locale.ROOT);
+    Predicate<Message> matches =
+        STARRED_QUERY.equals(text)
+            ? message -> message.saved
+            : message -> message.text.toLowerCase(Locale.ROOT).contains(text);
+    return select(message -> message.postedAt <= indexedBefore && matches.test(message));
+  }
+
+  private List<Map<String, Object>> select(Predicate<Message> filter) {
+    return messages.stream().filter(filter).map(Message::toMap).collect(Collectors.toList());
+  }
+
+  private static final class Message {
+
+    private final long id;
+    private final String channelId;
+    private final String text;
+    private final long postedAt = System.currentTimeMillis();
+    private boolean saved;
+
+    private Message(long id, String channelId, String text) {
+      this.id = id;
+      this.channelId = channelId;
+      this.text = text;
+    }
+
+    private Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("id", id);
+      map.put("channel", channelId);
+      map.put("text", text);
+      map.put("saved", saved);
+      return map;
+    }
+  }
+}
@@ -0,0 +1,16 @@
+# Posts hundreds of messages, run it explicitly: -Dcucumber.filter.tags=@Seeding
+@Seeding @Ignore
+Feature: Searching a busy channel
+  As a Slack user
+  I want to find a message in a channel with many messages
+  In order to not scroll through the whole history
+
+  Background: User is signed in
+    When I sign in the workspace at URL provided by flag "workspace_url"
+    Then I am in "Slack" workspace
+
+  Scenario: Find the last of many messages
+    Given channel "random" has 500 messages
+    Then the last step took less than 60000 ms
+    When I search for "Seed message 500 of 500"
+    Then the last message appears in search results
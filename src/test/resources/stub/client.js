@@ -0,0 +1,247 @@
+/*
+ * Client page of the Slack stub. The initial state is rendered synchronously, so the page is
+ * complete when the document ready state is; later changes go through the stub API.
+ */
+(function () {
+  'use strict';
+
+  var SAVED_MARK = 'Added to your saved items';
+  var state = window.STUB_STATE;
+  var messages = {};
+  var hovered = null;
+  // The last message post, the next one is sent once it is done
+  var sending = Promise.resolve();
+
+  var workspaceTrigger = document.querySelector('[data-qa=team-menu-trigger]');
+  var sidebar = document.querySelector('[data-qa=slack_kit_list]');
+  var pane = document.querySelector('[data-qa=message_pane]');
+  var input = document.querySelector('.p-message_input .ql-editor');
+  var search = document.querySelector('.p-search');
+  var searchInput = search.querySelector('.ql-editor');
+  var searchResults = search.querySelector('.p-search__results');
+  var savedPane = document.querySelector('[data-qa=saved_flexpane]');
+  var savedItems = savedPane.querySelector('.p-saved_items');
+  var actions = document.querySelector('.c-message_actions');
+  var saveButton = actions.querySelector('[data-qa=save_message]');
+
+  function api(method, path, body) {
+    var init = {method: method, credentials: 'same-origin'};
+    if (body) {
+      init.headers = {'Content-Type': 'application/json'};
+      init.body = JSON.stringify(body);
+    }
+    return fetch('/api/' + path, init).then(function (response) {
+      if (!response.ok) {
+        throw new Error(path + ' failed with status ' + response.status);
+      }
+      return response.json();
+    });
+  }
+
+  function element(tag, attributes, text) {
+    var el = document.createElement(tag);
+    Object.keys(attributes).forEach(function (name) {
+      el.setAttribute(name, attributes[name]);
+    });
+    if (text) {
+      el.textContent = text;
+    }
+    return el;
+  }
+
+  function channelName(id) {
+    return state.channels.filter(function (channel) { return channel.id === id; })[0].name;
+  }
+
+  // The sidebar is virtualised like the real one: only the items around the visible part of the
+  // list are in the document, positioned by their index
+  var SIDEBAR_ITEM_HEIGHT = 28;
+  var SIDEBAR_OVERSCAN = 5;
+  var sidebarItems = [];
+  var sidebarSpacer = element('div', {'class': 'p-sidebar__spacer'});
+
+  function renderSidebar() {
+    sidebarItems = state.channels.map(function (channel) {
+      return {name: channel.name, channel: channel.id,
+        open: function () { selectChannel(channel.id); }};
+    });
+    sidebarItems.push({name: 'Saved items', open: openSavedItems});
+    sidebarSpacer.style.height = sidebarItems.length * SIDEBAR_ITEM_HEIGHT + 'px';
+    sidebar.appendChild(sidebarSpacer);
+    sidebar.addEventListener('scroll', renderSidebarItems);
+    renderSidebarItems();
+  }
+
+  function renderSidebarItems() {
+    var first = Math.max(0, Math.floor(sidebar.scrollTop / SIDEBAR_ITEM_HEIGHT) - SIDEBAR_OVERSCAN);
+    var last = Math.min(sidebarItems.length, SIDEBAR_OVERSCAN
+        + Math.ceil((sidebar.scrollTop + sidebar.clientHeight) / SIDEBAR_ITEM_HEIGHT));
+    sidebarSpacer.textContent = '';
+    for (var i = first; i < last; i++) {
+      var attributes = {'data-qa': 'virtual-list-item', 'role': 'treeitem',
+        'style': 'top: ' + i * SIDEBAR_ITEM_HEIGHT + 'px'};
+      if (sidebarItems[i].channel) {
+        attributes['data-channel'] = sidebarItems[i].channel;
+      }
+      var item = element('div', attributes, sidebarItems[i].name);
+      item.addEventListener('click', sidebarItems[i].open);
+      sidebarSpacer.appendChild(item);
+    }
+    if (state.channel) {
+      renderSelectedChannel();
+    }
+  }
+
+  function renderSelectedChannel() {
+    sidebar.querySelectorAll('[role=treeitem]').forEach(function (item) {
+      item.setAttribute('aria-selected', String(item.dataset.channel === state.channel));
+    });
+    input.setAttribute('aria-label', 'Message #' + channelName(state.channel));
+  }
+
+  function renderMessage(message) {
+    messages[message.id] = message;
+    var container = element('div', {'data-qa': 'message_container', 'class': 'c-message',
+      'data-id': message.id});
+    container.appendChild(element('div', {'class': 'p-rich_text_section'}, message.text));
+    container.addEventListener('mouseenter', function () { hover(container, message.id); });
+    pane.appendChild(container);
+    renderSavedMark(container, message);
+    pane.scrollTop = pane.scrollHeight;
+  }
+
+  function renderSavedMark(container, message) {
+    var mark = container.querySelector('.c-message__saved');
+    if (message.saved && !mark) {
+      container.insertBefore(element('div', {'class': 'c-message__saved'}, SAVED_MARK),
+          container.firstChild);
+    } else if (!message.saved && mark) {
+      mark.remove();
+    }
+  }
+
+  function renderMessages() {
+    pane.textContent = '';
+    hovered = null;
+    actions.hidden = true;
+    document.body.appendChild(actions);
+    state.messages.forEach(renderMessage);
+  }
+
+  function hover(container, id) {
+    hovered = id;
+    container.appendChild(actions);
+    actions.hidden = false;
+    renderSaveButton();
+  }
+
+  function renderSaveButton() {
+    var label = messages[hovered].saved ? 'Remove from saved items' : 'Save';
+    saveButton.setAttribute('aria-label', label);
+    saveButton.textContent = label;
+  }
+
+  function updateMessage(message) {
+    messages[message.id] = message;
+    var container = pane.querySelector('[data-id="' + message.id + '"]');
+    if (container) {
+      renderSavedMark(container, message);
+    }
+    if (hovered === message.id) {
+      renderSaveButton();
+    }
+    if (!savedPane.hidden) {
+      openSavedItems();
+    }
+  }
+
+  function selectChannel(id) {
+    state.channel = id;
+    history.pushState(null, '', '/client/T0/' + id);
+    renderSelectedChannel();
+    api('GET', 'conversations.history?channel=' + encodeURIComponent(id)).then(function (r) {
+      if (state.channel === id) {
+        state.messages = r.messages;
+        renderMessages();
+      }
+    });
+  }
+
+  function openSavedItems() {
+    savedPane.hidden = false;
+    api('GET', 'stars.list').then(function (r) {
+      savedItems.textContent = '';
+      r.messages.forEach(function (message) {
+        var item = element('div', {'class': 'c-saved_item'});
+        item.appendChild(element('div', {'class': 'p-rich_text_section'}, message.text));
+        savedItems.appendChild(item);
+      });
+    });
+  }
+
+  function sendMessage() {
+    var text = input.innerText.trim();
+    if (!text) {
+      return;
+    }
+    input.textContent = '';
+    var channel = state.channel;
+    // The messages are posted one after another, so they are stored in the order they were sent
+    sending = sending.then(function () {
+      return api('POST', 'chat.postMessage', {channel: channel, text: text});
+    }).then(function (r) {
+      if (state.channel === channel) {
+        state.messages.push(r.message);
+        renderMessage(r.message);
+      }
+    }, function (e) {
+      console.error(e);
+    });
+  }
+
+  function searchMessages() {
+    var query = searchInput.innerText.trim();
+    api('GET', 'search.messages?query=' + encodeURIComponent(query)).then(function (r) {
+      searchResults.textContent = '';
+      if (!r.messages.length) {
+        searchResults.appendChild(element('div', {'class': 'p-search__empty'}, 'No results'));
+      }
+      r.messages.forEach(function (message) {
+        var item = element('div', {'class': 'c-focus_manage_list__item', 'role': 'listitem'});
+        item.appendChild(element('span', {'class': 'p-rich_text_section'}, message.text));
+        searchResults.appendChild(item);
+      });
+    });
+  }
+
+  function onEnter(el, action) {
+    el.addEventListener('keydown', function (event) {
+      if (event.key === 'Enter' && !event.shiftKey) {
+        event.preventDefault();
+        action();
+      }
+    });
+  }
+
+  saveButton.addEventListener('click', function () {
+    var message = messages[hovered];
+    api('POST', message.saved ? 'stars.remove' : 'stars.add', {id: message.id})
+        .then(function (r) { updateMessage(r.message); });
+  });
+  document.querySelector('[data-qa=top_nav_search]').addEventListener('click', function () {
+    search.hidden = false;
+    searchInput.focus();
+  });
+  document.querySelector('[data-qa=search_input_close]').addEventListener('click', function () {
+    search.hidden = true;
+    searchInput.textContent = '';
+    searchResults.textContent = '';
+  });
+  onEnter(input, sendMessage);
+  onEnter(searchInput, searchMessages);
+
+  workspaceTrigger.textContent = state.workspace;
+  renderSidebar();
+  renderSelectedChannel();
+  renderMessages();
+})();